@@ -0,0 +1,43 @@
+package com.nandincube.jamjot.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+
+import com.nandincube.jamjot.spotify.SpotifyAuthorizedClientService;
+
+@Configuration
+@EnableScheduling // for SpotifyTokenRefresher
+public class AuthorizedClientConfiguration {
+
+	@Bean
+	public SpotifyAuthorizedClientService authorizedClientService(
+			@Value("${jamjot.spotify.token-refresh.lock-stripes:64}") int lockStripes) {
+		return new SpotifyAuthorizedClientService(lockStripes);
+	}
+
+	@Bean
+	public OAuth2AuthorizedClientManager authorizedClientManager(
+			ClientRegistrationRepository clientRegistrationRepository,
+			OAuth2AuthorizedClientRepository authorizedClientRepository,
+			SpotifyAuthorizedClientService authorizedClientService) {
+		DefaultOAuth2AuthorizedClientManager authorizedClientManager = new DefaultOAuth2AuthorizedClientManager(
+				clientRegistrationRepository, authorizedClientRepository);
+		authorizedClientManager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+				.authorizationCode()
+				.refreshToken()
+				.build());
+
+		// the client is loaded again under the user's lock, so a token renewed by the
+		// refresher or a concurrent request is reused instead of being refreshed twice
+		return authorizeRequest -> authorizedClientService.withUserLock(authorizeRequest.getPrincipal().getName(),
+				() -> authorizedClientManager.authorize(authorizeRequest));
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.nandincube.jamjot.configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounds the number of requests of one class that are handled at the same
+ * time. Requests beyond the concurrency limit wait in a bounded queue for up to
+ * the maximum wait time, and are rejected when the queue is full or the wait
+ * times out. Active and queued requests, rejections and wait times are
+ * published per bulkhead.
+ */
+public class Bulkhead {
+    private static final String METRIC_NAME = "jamjot.bulkhead";
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter rejected;
+    private final Timer waitTimer;
+
+    public Bulkhead(String name, MeterRegistry meterRegistry, int maxConcurrent, int maxQueued, Duration maxWait) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new Semaphore(this.maxConcurrent, true);
+
+        Gauge.builder(METRIC_NAME + ".active", this, Bulkhead::getActive)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".queued", queued, AtomicInteger::get)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter(METRIC_NAME + ".rejected", "bulkhead", name);
+        this.waitTimer = meterRegistry.timer(METRIC_NAME + ".wait", "bulkhead", name);
+    }
+
+    /**
+     * This method admits a request into the bulkhead, waiting in the queue if the
+     * bulkhead is at its concurrency limit. Every admitted request must be
+     * followed by a call to release().
+     *
+     * @return boolean - True if the request was admitted, false if it was
+     *         rejected.
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            rejected.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * This method releases the place of a request admitted by tryAcquire().
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
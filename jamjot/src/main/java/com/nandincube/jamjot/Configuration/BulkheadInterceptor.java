@@ -0,0 +1,67 @@
+package com.nandincube.jamjot.configuration;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.controller.DatabaseOnly;
+import com.nandincube.jamjot.dto.GenericResponse;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admits each request through the bulkhead matching its endpoint: endpoints
+ * marked with DatabaseOnly go through the DB-only bulkhead, and every other
+ * endpoint is assumed to call Spotify. Requests that are rejected by their
+ * bulkhead are answered with 503 Service Unavailable.
+ */
+public class BulkheadInterceptor implements HandlerInterceptor {
+    private static final String ATTRIBUTE = BulkheadInterceptor.class.getName();
+    private static final String REJECTED_MESSAGE = "Error: Too many requests are in progress, please try again later!";
+
+    private final Bulkhead spotifyBulkhead;
+    private final Bulkhead databaseBulkhead;
+    private final ObjectMapper objectMapper;
+
+    public BulkheadInterceptor(Bulkhead spotifyBulkhead, Bulkhead databaseBulkhead, ObjectMapper objectMapper) {
+        this.spotifyBulkhead = spotifyBulkhead;
+        this.databaseBulkhead = databaseBulkhead;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+
+        Bulkhead bulkhead = handlerMethod.hasMethodAnnotation(DatabaseOnly.class) ? databaseBulkhead
+                : spotifyBulkhead;
+        if (!bulkhead.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), new GenericResponse(REJECTED_MESSAGE));
+            return false;
+        }
+
+        request.setAttribute(ATTRIBUTE, bulkhead);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.getAttribute(ATTRIBUTE) instanceof Bulkhead bulkhead) {
+            request.removeAttribute(ATTRIBUTE);
+            bulkhead.release();
+        }
+    }
+}
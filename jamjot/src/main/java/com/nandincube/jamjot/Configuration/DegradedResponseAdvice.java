@@ -0,0 +1,34 @@
+package com.nandincube.jamjot.configuration;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import com.nandincube.jamjot.spotify.SpotifyDegradedMode;
+
+/**
+ * Adds the degraded header to responses that were served without Spotify while
+ * it was unavailable.
+ */
+@ControllerAdvice
+public class DegradedResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+            ServerHttpResponse response) {
+        if (SpotifyDegradedMode.isDegraded()) {
+            response.getHeaders().set(SpotifyDegradedMode.DEGRADED_HEADER, SpotifyDegradedMode.DEGRADED_REASON);
+        }
+        return body;
+    }
+}
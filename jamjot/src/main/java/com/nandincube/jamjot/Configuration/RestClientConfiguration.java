@@ -1,5 +1,9 @@
 package com.nandincube.jamjot.configuration;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.core.Authentication;
@@ -10,18 +14,62 @@ import org.springframework.security.oauth2.client.web.client.OAuth2ClientHttpReq
 import org.springframework.security.oauth2.client.web.client.OAuth2ClientHttpRequestInterceptor.ClientRegistrationIdResolver;
 import org.springframework.web.client.RestClient;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache;
+import com.nandincube.jamjot.spotify.SpotifyCircuitBreaker;
+import com.nandincube.jamjot.spotify.SpotifyClientHttpRequestFactory;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+import com.nandincube.jamjot.spotify.SpotifyRequestCoalescer;
+import com.nandincube.jamjot.spotify.SpotifyRequestScheduler;
+
 //https://docs.spring.io/spring-security/reference/servlet/oauth2/index.html#oauth2-client-access-protected-resources-current-user
 @Configuration
 public class RestClientConfiguration {
 
 	@Bean
-	public RestClient restClient(OAuth2AuthorizedClientManager authorizedClientManager) {
+	public SpotifyClientHttpRequestFactory spotifyRequestFactory(MeterRegistry meterRegistry,
+			@Value("${jamjot.spotify.http.connect-timeout:2s}") Duration connectTimeout,
+			@Value("${jamjot.spotify.http.read-timeout:5s}") Duration readTimeout,
+			@Value("${jamjot.spotify.http.total-timeout:10s}") Duration totalTimeout,
+			@Value("${jamjot.spotify.http.max-threads:200}") int maxThreads,
+			@Value("${jamjot.spotify.http.hedging.enabled:true}") boolean hedgingEnabled,
+			@Value("${jamjot.spotify.http.hedging.min-delay:50ms}") Duration minHedgeDelay,
+			@Value("${jamjot.spotify.http.hedging.max-ratio:0.05}") double maxHedgeRatio,
+			SpotifyRequestScheduler spotifyRequestScheduler,
+			SpotifyCircuitBreaker spotifyCircuitBreaker,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		return new SpotifyClientHttpRequestFactory(meterRegistry, connectTimeout, readTimeout, totalTimeout,
+				maxThreads, hedgingEnabled, minHedgeDelay, maxHedgeRatio, spotifyRequestScheduler,
+				spotifyCircuitBreaker, virtualThreads);
+	}
+
+	@Bean
+	public ExecutorService spotifyPagingExecutor(
+			@Value("${jamjot.spotify.paging.max-threads:32}") int maxThreads,
+			@Value("${jamjot.spotify.paging.queue-capacity:1000}") int queueCapacity,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		return SpotifyPageFetcher.newPagingExecutor(maxThreads, queueCapacity, virtualThreads);
+	}
+
+	@Bean
+	public RestClient restClient(OAuth2AuthorizedClientManager authorizedClientManager,
+			SpotifyClientHttpRequestFactory spotifyRequestFactory,
+			SpotifyRequestCoalescer spotifyRequestCoalescer,
+			PlaylistOwnershipCache playlistOwnershipCache,
+			SpotifyCircuitBreaker spotifyCircuitBreaker,
+			SpotifyRequestScheduler spotifyRequestScheduler) {
 		OAuth2ClientHttpRequestInterceptor requestInterceptor =
 				new OAuth2ClientHttpRequestInterceptor(authorizedClientManager);
 		requestInterceptor.setClientRegistrationIdResolver(clientRegistrationIdResolver());
 
 		return RestClient.builder()
+				.requestFactory(spotifyRequestFactory)
+				.requestInterceptor(spotifyRequestCoalescer)
+				.requestInterceptor(playlistOwnershipCache)
+				.requestInterceptor(spotifyCircuitBreaker)
 				.requestInterceptor(requestInterceptor)
+				.requestInterceptor(spotifyRequestScheduler) // must stay last as it may resend requests
 				.build();
 	}
 
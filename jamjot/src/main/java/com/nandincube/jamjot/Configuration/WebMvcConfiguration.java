@@ -0,0 +1,65 @@
+package com.nandincube.jamjot.configuration;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.spotify.SpotifyDeadline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+    private final Duration spotifyDeadline;
+    private final BulkheadInterceptor bulkheadInterceptor;
+
+    public WebMvcConfiguration(@Value("${jamjot.spotify.request-deadline:8s}") Duration spotifyDeadline,
+            MeterRegistry meterRegistry, ObjectMapper objectMapper,
+            @Value("${jamjot.bulkhead.spotify.max-concurrent:100}") int spotifyMaxConcurrent,
+            @Value("${jamjot.bulkhead.spotify.max-queued:50}") int spotifyMaxQueued,
+            @Value("${jamjot.bulkhead.spotify.max-wait:2s}") Duration spotifyMaxWait,
+            @Value("${jamjot.bulkhead.database.max-concurrent:50}") int databaseMaxConcurrent,
+            @Value("${jamjot.bulkhead.database.max-queued:100}") int databaseMaxQueued,
+            @Value("${jamjot.bulkhead.database.max-wait:1s}") Duration databaseMaxWait,
+            @Value("${server.tomcat.threads.max:200}") int maxRequestThreads,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        // requests admitted or queued by the Spotify bulkhead each hold a request thread, so they must leave some
+        // free for database only requests. Request threads are not pooled when virtual threads are enabled
+        if (!virtualThreads && spotifyMaxConcurrent + spotifyMaxQueued >= maxRequestThreads) {
+            throw new IllegalStateException("jamjot.bulkhead.spotify.max-concurrent + max-queued ("
+                    + (spotifyMaxConcurrent + spotifyMaxQueued) + ") must be below server.tomcat.threads.max ("
+                    + maxRequestThreads + ")");
+        }
+        this.spotifyDeadline = spotifyDeadline;
+        this.bulkheadInterceptor = new BulkheadInterceptor(
+                new Bulkhead("spotify", meterRegistry, spotifyMaxConcurrent, spotifyMaxQueued, spotifyMaxWait),
+                new Bulkhead("database", meterRegistry, databaseMaxConcurrent, databaseMaxQueued, databaseMaxWait),
+                objectMapper);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // a playback stream stays open without holding a worker thread, and its Spotify calls are made by the
+        // shared poller, so it is not admitted through a bulkhead
+        registry.addInterceptor(bulkheadInterceptor).addPathPatterns("/annotations/**")
+                .excludePathPatterns("/annotations/timestamps/playback/stream");
+
+        // every controller gets one budget shared by all Spotify calls it makes, starting once it is admitted
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                SpotifyDeadline.start(spotifyDeadline);
+                return true;
+            }
+        }).addPathPatterns("/annotations/**");
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the response of adding many timestamp annotations to a
+ * track at once. The added timestamps are returned in request order, with their IDs.
+ */
+public record AddTimestampNotesResponse(
+    @Schema(description = "The list of added timestamps")
+    ArrayList<TimestampNoteResponseDTO> items
+) {}
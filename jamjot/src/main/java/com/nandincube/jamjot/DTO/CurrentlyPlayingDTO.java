@@ -0,0 +1,45 @@
+package com.nandincube.jamjot.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the playback state of a user, as returned by the
+ * Spotify API for the currently playing track. Only the fields needed to find
+ * the track and playlist being played and the position within the track are
+ * kept.
+ */
+public record CurrentlyPlayingDTO(
+    @Schema(example = "45000", description = "The playback position within the track in milliseconds")
+    Long progress_ms,
+    @Schema(example = "true", description = "Whether something is currently playing")
+    Boolean is_playing,
+    @Schema(description = "The track currently playing")
+    Item item,
+    @Schema(description = "The context the track is played from, such as a playlist")
+    Context context
+) {
+
+    public record Item(
+        @Schema(example = "11dFghVXANMlKmJXsNCbNl", description = "The Spotify ID of the track")
+        String id
+    ) {}
+
+    public record Context(
+        @Schema(example = "playlist", description = "The type of the context")
+        String type,
+        @Schema(example = "spotify:playlist:37i9dQZF1DXcBWIGoYBM5M", description = "The Spotify URI of the context")
+        String uri
+    ) {}
+
+    /**
+     * This method returns the Spotify ID of the playlist being played from.
+     *
+     * @return String - The playlist ID, or null if playback is not from a playlist.
+     */
+    public String playlistID() {
+        if (context == null || !"playlist".equals(context.type()) || context.uri() == null) {
+            return null;
+        }
+        return context.uri().substring(context.uri().lastIndexOf(':') + 1);
+    }
+}
@@ -0,0 +1,14 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the response of updating the notes of many tracks in a
+ * playlist at once. There is one result for each requested item, in request order.
+ */
+public record EditTrackNotesResponse(
+    @Schema(description = "The result for each requested track")
+    ArrayList<TrackNoteResultDTO> items
+) {}
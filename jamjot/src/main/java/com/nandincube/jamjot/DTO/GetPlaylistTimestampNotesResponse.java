@@ -0,0 +1,13 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the response of retrieving timestamp annotations across the tracks of a playlist.
+ */
+public record GetPlaylistTimestampNotesResponse (
+    @Schema(description = "The list of timestamps, ordered by track number and start time")
+    ArrayList<PlaylistTimestampNoteDTO> items
+) {}
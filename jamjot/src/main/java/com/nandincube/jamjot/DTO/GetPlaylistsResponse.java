@@ -10,6 +10,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 public record GetPlaylistsResponse (
     @Schema(description = "The URL for the next page of playlists")
     String next,
+    @Schema(description = "The total number of playlists")
+    Integer total,
     @Schema(description = "The list of playlists")
     ArrayList<PlaylistDTO> items
-) {}
+) implements SpotifyPage<PlaylistDTO> {}
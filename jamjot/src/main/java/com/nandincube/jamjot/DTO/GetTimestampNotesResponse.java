@@ -6,8 +6,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
  * DTO for encapsulating the response of retrieving timestamp annotations associated track.
+ * The timestamps are ordered by start time and returned a page at a time.
  */
 public record GetTimestampNotesResponse (
+    @Schema(example = "90000_12", description = "The cursor for the next page of timestamps, or null if this is the last page")
+    String next,
     @Schema(description = "The list of timestamps")
     ArrayList<TimestampNoteResponseDTO> items
 ) {}
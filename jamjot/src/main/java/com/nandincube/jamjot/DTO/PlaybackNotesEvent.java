@@ -0,0 +1,20 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating an event of the playback note stream, sent whenever the
+ * timestamp annotations covering the user's playback position change.
+ */
+public record PlaybackNotesEvent(
+    @Schema(example = "37i9dQZF1DXcBWIGoYBM5M", description = "The Spotify ID of the playlist being played, or null if playback is not from a playlist")
+    String playlist_id,
+    @Schema(example = "11dFghVXANMlKmJXsNCbNl", description = "The Spotify ID of the track being played, or null if nothing is playing")
+    String track_id,
+    @Schema(example = "45000", description = "The playback position within the track in milliseconds")
+    Long progress_ms,
+    @Schema(description = "The timestamps covering the playback position, for every position of the track in the playlist")
+    ArrayList<PlaylistTimestampNoteDTO> items
+) {}
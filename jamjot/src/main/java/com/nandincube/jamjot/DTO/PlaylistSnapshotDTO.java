@@ -0,0 +1,13 @@
+package com.nandincube.jamjot.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the snapshot ID of a Spotify playlist. Spotify changes
+ * the snapshot ID every time the contents of a playlist change, so it is used
+ * to check whether previously retrieved playlist tracks are still up to date.
+ */
+public record PlaylistSnapshotDTO(
+    @Schema(example = "AAAAB8C+GmG0RZ0ogNV9ZDSDsiFgFT3n", description = "The version identifier of the playlist")
+    String snapshot_id
+) {}
@@ -0,0 +1,27 @@
+package com.nandincube.jamjot.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the details of a timestamp annotation of a track in a playlist, including the track it
+ * belongs to. This DTO is used for outgoing responses when retrieving the timestamp annotations of a whole playlist.
+ */
+public record PlaylistTimestampNoteDTO(
+    @Schema(example = "11dFghVXANMlKmJXsNCbNl", description = "The Spotify ID of the track")
+    String track_id,
+    @Schema(example = "3", description = "The track number/position of the track in the playlist")
+    Integer track_number,
+    @Schema(example = "1", description = "The unique ID of the timestamp")
+    Long id,
+    @Schema(example = "01:30", description = "The start time (mm:ss) of the timestamp in the track")
+    String start_time,
+    @Schema(example = "02:15", description = "The end time (mm:ss) of the timestamp in the track")
+    String end_time,
+    @Schema(example = "This is my favorite part!", description = "The note associated with the timestamp")
+    String note
+) {
+
+    public PlaylistTimestampNoteDTO(String trackID, Integer trackNumber, TimestampNoteResponseDTO timestamp) {
+        this(trackID, trackNumber, timestamp.id(), timestamp.start_time(), timestamp.end_time(), timestamp.note());
+    }
+}
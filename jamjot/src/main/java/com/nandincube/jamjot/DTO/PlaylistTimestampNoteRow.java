@@ -0,0 +1,16 @@
+package com.nandincube.jamjot.dto;
+
+import java.time.Duration;
+
+/**
+ * A timestamp note as read from the jamjot DB together with the position of
+ * its track in the playlist, used when the notes of a whole playlist are read
+ * at once.
+ */
+public record PlaylistTimestampNoteRow(String trackID, Integer trackNumber, Long id, Duration start, Duration end,
+        String note) {
+
+    public TimestampNoteRow toTimestampNoteRow() {
+        return new TimestampNoteRow(id, start, end, note);
+    }
+}
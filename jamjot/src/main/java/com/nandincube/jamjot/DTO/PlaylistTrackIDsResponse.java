@@ -0,0 +1,15 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+/**
+ * DTO for encapsulating a page of track IDs from a Spotify playlist. This is
+ * the result of decoding a page of playlist items requested with a field
+ * filter, where only the ID of each track is kept. IDs are listed in playlist
+ * order and are null for items that are not tracks (e.g. unavailable tracks).
+ */
+public record PlaylistTrackIDsResponse(
+        String next,
+        Integer total,
+        ArrayList<String> items) implements SpotifyPage<String> {
+}
@@ -0,0 +1,17 @@
+package com.nandincube.jamjot.dto;
+
+import java.util.ArrayList;
+
+/**
+ * Common shape of the paging objects returned by the Spotify API. A page
+ * contains a slice of the items, the total number of items available and the
+ * URL of the next page (null on the last page).
+ */
+public interface SpotifyPage<T> {
+
+    String next();
+
+    Integer total();
+
+    ArrayList<T> items();
+}
@@ -1,5 +1,7 @@
 package com.nandincube.jamjot.dto;
 
+import java.time.Duration;
+
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -15,6 +17,24 @@ public record TimestampNoteResponseDTO(
     String end_time,
     @Schema(example="This is my favorite part!", description = "The note associated with the timestamp")
     String note
-) {}
+) {
+
+    /**
+     * Creates the DTO from the stored start and end times of a timestamp, formatting
+     * them as mm:ss.
+     *
+     * @param id    - The ID of the timestamp.
+     * @param start - The start time of the timestamp in the track.
+     * @param end   - The end time of the timestamp in the track.
+     * @param note  - The note associated with the timestamp.
+     */
+    public TimestampNoteResponseDTO(Long id, Duration start, Duration end, String note) {
+        this(id, format(start), format(end), note);
+    }
+
+    private static String format(Duration time) {
+        return String.format("%02d:%02d", time.toMinutes(), time.toSecondsPart());
+    }
+}
 
 
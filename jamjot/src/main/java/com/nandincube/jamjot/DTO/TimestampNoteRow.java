@@ -0,0 +1,16 @@
+package com.nandincube.jamjot.dto;
+
+import java.time.Duration;
+
+/**
+ * A timestamp note as read from the jamjot DB, with its start and end times
+ * kept as durations. The start time and ID make up the position of the note in
+ * the ordered list of notes of a track, which is used as the cursor when the
+ * notes are read a page at a time.
+ */
+public record TimestampNoteRow(Long id, Duration start, Duration end, String note) {
+
+    public TimestampNoteResponseDTO toResponse() {
+        return new TimestampNoteResponseDTO(id, start, end, note);
+    }
+}
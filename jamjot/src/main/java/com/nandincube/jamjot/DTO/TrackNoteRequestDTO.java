@@ -0,0 +1,53 @@
+package com.nandincube.jamjot.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the note for one track in a playlist, identified by the
+ * track ID and its track number in the playlist.
+ * This DTO is used for incoming requests to update the notes of many tracks at once.
+ */
+public class TrackNoteRequestDTO {
+
+    @Schema(example = "4uLU6hMCjMI75M1A2tKUQC", description = "The Spotify ID of the track")
+    private String trackID;
+
+    @Schema(example = "14", description = "The track number in the playlist")
+    private Integer trackNumber;
+
+    @Schema(example = "This is a sample note.", description = "The note content associated with the track")
+    private String note;
+
+    public TrackNoteRequestDTO() {
+    }
+
+    public TrackNoteRequestDTO(String trackID, Integer trackNumber, String note) {
+        this.trackID = trackID;
+        this.trackNumber = trackNumber;
+        this.note = note;
+    }
+
+    public String getTrackID() {
+        return trackID;
+    }
+
+    public void setTrackID(String trackID) {
+        this.trackID = trackID;
+    }
+
+    public Integer getTrackNumber() {
+        return trackNumber;
+    }
+
+    public void setTrackNumber(Integer trackNumber) {
+        this.trackNumber = trackNumber;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+}
@@ -0,0 +1,23 @@
+package com.nandincube.jamjot.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO for encapsulating the result of updating the note of one track when the
+ * notes of many tracks are updated at once.
+ */
+public record TrackNoteResultDTO(
+    @Schema(example = "4uLU6hMCjMI75M1A2tKUQC", description = "The Spotify ID of the track")
+    String track_id,
+    @Schema(example = "14", description = "The track number in the playlist")
+    Integer track_number,
+    @Schema(example = "UPDATED", description = "UPDATED if the note was saved, TRACK_NOT_FOUND if the track is not at the track number in the playlist, PLAYLIST_NOT_FOUND if the playlist was removed before the note was saved, or INVALID if the item is incomplete or the note is too long")
+    Status status
+) {
+    public enum Status {
+        UPDATED,
+        TRACK_NOT_FOUND,
+        PLAYLIST_NOT_FOUND,
+        INVALID
+    }
+}
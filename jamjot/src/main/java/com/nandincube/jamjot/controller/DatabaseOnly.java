@@ -0,0 +1,17 @@
+package com.nandincube.jamjot.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint that only reads or writes the jamjot DB and never calls
+ * Spotify. Such endpoints are admitted through the DB-only bulkhead, so they
+ * keep being served while requests waiting on Spotify fill up the Spotify
+ * bulkhead.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DatabaseOnly {
+}
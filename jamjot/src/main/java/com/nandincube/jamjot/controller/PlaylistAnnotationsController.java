@@ -1,6 +1,7 @@
 package com.nandincube.jamjot.controller;
 
 import java.util.ArrayList;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -22,6 +23,7 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
 import com.nandincube.jamjot.service.PlaylistAnnotationService;
 import com.nandincube.jamjot.dto.GenericResponse;
@@ -54,6 +56,10 @@ public class PlaylistAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") })
         })
@@ -66,6 +72,10 @@ public class PlaylistAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (Exception e) {
                         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
                 }
@@ -96,6 +106,10 @@ public class PlaylistAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = NoteDTO.class), examples = @ExampleObject(value = """
                                                              {"note": "Sample playlist note"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") })
         })
@@ -112,6 +126,10 @@ public class PlaylistAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ex) { // if playlist is not found - i.e.
                                                                                     // playlist ID invalid
@@ -149,6 +167,10 @@ public class PlaylistAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Playlist Note Updated!"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") })
         })
@@ -167,6 +189,10 @@ public class PlaylistAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ex) { // if playlist is not found
                                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -205,6 +231,10 @@ public class PlaylistAnnotationsController {
                                                              {"message": "Playlist Note Deleted!"}
                                                         """))
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") })
         })
@@ -222,6 +252,10 @@ public class PlaylistAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ex) { // if playlist is not found - i.e.
                                                                                     // playlist ID invalid
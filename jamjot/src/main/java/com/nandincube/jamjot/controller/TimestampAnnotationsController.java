@@ -1,9 +1,13 @@
 package com.nandincube.jamjot.controller;
 
 import java.util.ArrayList;
+import java.util.List;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,13 +29,18 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.TimestampNotFoundException;
 import com.nandincube.jamjot.exceptions.TrackNotFoundException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
+import com.nandincube.jamjot.service.PlaybackNoteStreamService;
 import com.nandincube.jamjot.service.TimestampAnnotationService;
+import com.nandincube.jamjot.dto.AddTimestampNotesResponse;
 import com.nandincube.jamjot.dto.GenericResponse;
+import com.nandincube.jamjot.dto.GetPlaylistTimestampNotesResponse;
 import com.nandincube.jamjot.dto.GetTimestampNotesResponse;
 import com.nandincube.jamjot.dto.NoteDTO;
+import com.nandincube.jamjot.dto.PlaybackNotesEvent;
 import com.nandincube.jamjot.dto.TimestampNoteRequestDTO;
 
 @RestController
@@ -39,9 +49,12 @@ import com.nandincube.jamjot.dto.TimestampNoteRequestDTO;
 public class TimestampAnnotationsController {
 
         private final TimestampAnnotationService timestampAnnotationService;
+        private final PlaybackNoteStreamService playbackNoteStreamService;
 
-        public TimestampAnnotationsController(TimestampAnnotationService timestampAnnotationService) {
+        public TimestampAnnotationsController(TimestampAnnotationService timestampAnnotationService,
+                        PlaybackNoteStreamService playbackNoteStreamService) {
                 this.timestampAnnotationService = timestampAnnotationService;
+                this.playbackNoteStreamService = playbackNoteStreamService;
         }
 
         @Operation(summary = "Update Timestamp Note", description = "Update the note for a timestamp interval in a specific track that appears in a playlist")
@@ -60,10 +73,15 @@ public class TimestampAnnotationsController {
                                                              {"message": "Timestamp Note Updated!"}
                                                         """))
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Too many requests in progress", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Too many requests are in progress, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
 
         @PutMapping("/{timestampID}/note")
+        @DatabaseOnly
         public ResponseEntity<GenericResponse> updateTimestampNote(Authentication userToken,
                         @Parameter(description = "The timestamp ID for the specified timestamp", required = true) @PathVariable Long timestampID,
                         @RequestBody NoteDTO note) {
@@ -104,6 +122,10 @@ public class TimestampAnnotationsController {
                                                              {"message": "Timestamp Note Added!"}
                                                         """))
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
 
@@ -129,6 +151,10 @@ public class TimestampAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (IllegalArgumentException e) {
                         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                         .body(new GenericResponse(e.getMessage()));
@@ -144,8 +170,78 @@ public class TimestampAnnotationsController {
                 }
         }
 
-        @Operation(summary = "Get Timestamp Notes", description = "Retrieve the timestamp notes for a specific track in a playlist")
+        @Operation(summary = "Add Timestamp Notes", description = "Add many notes for timestamp intervals in a specific track that appears in a playlist at once")
         @ApiResponses(value = {
+                        @ApiResponse(responseCode = "404", description = "Not Found - Track or playlist not found", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Could not find track or track number mismatch!"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "401", description = "Unauthorized - User authentication failed or user not found", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "400", description = "Bad Request - No timestamps, too many timestamps or an invalid timestamp interval given; no timestamp is added", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: End time must be less than track duration"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "200", description = "OK - Timestamp notes added successfully", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = AddTimestampNotesResponse.class), examples = @ExampleObject(value = """
+                                                             {"items": [{"id": 1, "start_time": "01:30", "end_time": "02:15", "note": "Drop"}]}
+                                                        """))
+                        }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                                        @Content(mediaType = "*/*") }) })
+
+        @PostMapping("/playlists/{playlistID}/tracks/{trackID}/notes")
+        public ResponseEntity<?> addTimestampNotes(Authentication userToken,
+                        @Parameter(description = "The Spotify ID for specified playlist", required = true) @PathVariable String playlistID,
+                        @Parameter(description = "The Spotify ID for the specified track", required = true) @PathVariable String trackID,
+                        @Parameter(description = "The track number/position in playlist", required = true) @RequestParam(required = true) Integer trackNumber,
+                        @RequestBody List<TimestampNoteRequestDTO> notes) {
+
+                String userID = userToken.getName();
+
+                try {
+                        return ResponseEntity.ok(timestampAnnotationService.addTimestampNotes(userID, playlistID,
+                                        trackID, trackNumber, notes));
+                } catch (PlaylistNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (TrackNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (UserNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch(RuntimeException e) {
+                        if(e.getCause() instanceof PlaylistNotFoundException ex){
+                                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                        .body(new GenericResponse(ex.getMessage()));
+                        } else {
+                                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                        }
+                } catch(Exception e) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                }
+        }
+
+        @Operation(summary = "Get Timestamp Notes", description = "Retrieve a page of the timestamp notes for a specific track in a playlist, ordered by start time")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "400", description = "Bad Request - Invalid limit or page cursor", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Invalid page cursor"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "404", description = "Not Found - Track or playlist not found", content = {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Error: Could not find track or track number mismatch!"}
@@ -153,15 +249,16 @@ public class TimestampAnnotationsController {
                         @ApiResponse(responseCode = "200", description = "OK - Timestamp notes retrieved successfully", content = {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GetTimestampNotesResponse.class), examples = @ExampleObject(value = """
                                                              {
+                                                                "next": "75000_2",
                                                                 "items": [
                                                                     {
-                                                                        "timestampID": 1,
+                                                                        "id": 1,
                                                                         "start_time": "00:30",
                                                                         "end_time": "00:45",
                                                                         "note": "Sample timestamp note"
                                                                     },
                                                                     {
-                                                                        "timestampID": 2,
+                                                                        "id": 2,
                                                                         "start_time": "01:15",
                                                                         "end_time": "01:30",
                                                                         "note": "Another timestamp note"
@@ -174,6 +271,10 @@ public class TimestampAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
 
@@ -181,20 +282,29 @@ public class TimestampAnnotationsController {
         public ResponseEntity<?> getTimestampNotes(Authentication userToken,
                         @Parameter(description = "The Spotify ID for specified playlist", required = true) @PathVariable String playlistID,
                         @Parameter(description = "The Spotify ID for the specified track", required = true) @PathVariable String trackID,
-                        @Parameter(description = "The track number/position in playlist", required = true) @RequestParam(required = true) Integer trackNumber) {
+                        @Parameter(description = "The track number/position in playlist", required = true) @RequestParam(required = true) Integer trackNumber,
+                        @Parameter(description = "The maximum number of timestamp notes to return") @RequestParam(required = false) Integer limit,
+                        @Parameter(description = "The cursor of the page to return, as returned in next with the previous page") @RequestParam(required = false) String after) {
 
                 String userID = userToken.getName();
 
                 try {
                         GetTimestampNotesResponse timestampResponse = timestampAnnotationService
-                                        .getTimestampNotes(userID, playlistID, trackID, trackNumber);
+                                        .getTimestampNotes(userID, playlistID, trackID, trackNumber, limit, after);
                         return ResponseEntity.ok(timestampResponse);
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (TrackNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch(RuntimeException e){
                         if(e.getCause() instanceof PlaylistNotFoundException ex){
                                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -207,6 +317,113 @@ public class TimestampAnnotationsController {
                 }
         }
 
+        @Operation(summary = "Get Active Timestamp Notes", description = "Retrieve the timestamp notes for a specific track in a playlist that overlap a playback position or range, ordered by start time")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "400", description = "Bad Request - Invalid position or range", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Range end must not be before range start"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "200", description = "OK - Active timestamp notes retrieved successfully", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GetTimestampNotesResponse.class), examples = @ExampleObject(value = """
+                                                             {
+                                                                "next": null,
+                                                                "items": [
+                                                                    {
+                                                                        "id": 1,
+                                                                        "start_time": "00:30",
+                                                                        "end_time": "00:45",
+                                                                        "note": "Sample timestamp note"
+                                                                    }
+                                                                ]
+                                                            }
+                                                        """))
+                        }),
+                        @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                                        @Content(mediaType = "*/*") }) })
+
+        @GetMapping("/playlists/{playlistID}/tracks/{trackID}/note/active")
+        @DatabaseOnly
+        public ResponseEntity<?> getActiveTimestampNotes(Authentication userToken,
+                        @Parameter(description = "The Spotify ID for specified playlist", required = true) @PathVariable String playlistID,
+                        @Parameter(description = "The Spotify ID for the specified track", required = true) @PathVariable String trackID,
+                        @Parameter(description = "The track number/position in playlist", required = true) @RequestParam(required = true) Integer trackNumber,
+                        @Parameter(description = "The playback position, or the start of the range, in milliseconds", required = true) @RequestParam(required = true) Long from,
+                        @Parameter(description = "The end of the range in milliseconds (defaults to the position)") @RequestParam(required = false) Long to) {
+
+                String userID = userToken.getName();
+
+                try {
+                        return ResponseEntity.ok(timestampAnnotationService.getActiveTimestampNotes(userID, playlistID,
+                                        trackID, trackNumber, from, to));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (Exception e) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                }
+        }
+
+        @Operation(summary = "Get Active Playlist Timestamp Notes", description = "Retrieve the timestamp notes for every track in a playlist that overlap a playback position or range within their track, ordered by track number and start time")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "400", description = "Bad Request - Invalid position or range", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Position must be non-negative"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "200", description = "OK - Active timestamp notes retrieved successfully", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GetPlaylistTimestampNotesResponse.class), examples = @ExampleObject(value = """
+                                                             {
+                                                                "items": [
+                                                                    {
+                                                                        "track_id": "11dFghVXANMlKmJXsNCbNl",
+                                                                        "track_number": 3,
+                                                                        "id": 1,
+                                                                        "start_time": "00:30",
+                                                                        "end_time": "00:45",
+                                                                        "note": "Sample timestamp note"
+                                                                    }
+                                                                ]
+                                                            }
+                                                        """))
+                        }),
+                        @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                                        @Content(mediaType = "*/*") }) })
+
+        @GetMapping("/playlists/{playlistID}/note/active")
+        @DatabaseOnly
+        public ResponseEntity<?> getActivePlaylistTimestampNotes(Authentication userToken,
+                        @Parameter(description = "The Spotify ID for specified playlist", required = true) @PathVariable String playlistID,
+                        @Parameter(description = "The playback position, or the start of the range, in milliseconds", required = true) @RequestParam(required = true) Long from,
+                        @Parameter(description = "The end of the range in milliseconds (defaults to the position)") @RequestParam(required = false) Long to) {
+
+                String userID = userToken.getName();
+
+                try {
+                        return ResponseEntity.ok(timestampAnnotationService.getActivePlaylistTimestampNotes(userID,
+                                        playlistID, from, to));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (Exception e) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                }
+        }
+
+        @Operation(summary = "Stream Playback Timestamp Notes", description = "Stream, as server-sent events named notes, the timestamp notes covering the playback position of the user's currently playing track on Spotify, whenever they change. Notes are only found when playing from one of the user's playlists.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "OK - Stream opened", content = {
+                                        @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = PlaybackNotesEvent.class), examples = @ExampleObject(value = """
+                                                             event:notes
+                                                             data:{"playlist_id":"37i9dQZF1DXcBWIGoYBM5M","track_id":"11dFghVXANMlKmJXsNCbNl","progress_ms":31000,"items":[{"track_id":"11dFghVXANMlKmJXsNCbNl","track_number":3,"id":1,"start_time":"00:30","end_time":"00:45","note":"Sample timestamp note"}]}
+                                                        """)) }) })
+
+        @GetMapping(path = "/playback/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        public SseEmitter streamPlaybackNotes(Authentication userToken) {
+                String clientRegistrationId = userToken instanceof OAuth2AuthenticationToken oauthToken
+                                ? oauthToken.getAuthorizedClientRegistrationId()
+                                : "spotify";
+                return playbackNoteStreamService.subscribe(userToken.getName(), clientRegistrationId);
+        }
+
         @Operation(summary = "Delete Timestamp Note", description = "Delete the timestampnote for a specific track in a playlist")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "404", description = "Not Found - Timestamp not found", content = {
@@ -218,9 +435,14 @@ public class TimestampAnnotationsController {
                                                              {"message": "Timestamp Note Deleted!"}
                                                         """))
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Too many requests in progress", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Too many requests are in progress, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
         @DeleteMapping("/{timestampID}/note")
+        @DatabaseOnly
         public ResponseEntity<GenericResponse> deleteTimestampNote(Authentication userToken,
                         @Parameter(description = "The timestamp ID for the specified timestamp", required = true) @PathVariable Long timestampID) {
                 String userID = userToken.getName();
@@ -1,6 +1,8 @@
 package com.nandincube.jamjot.controller;
 
 import java.util.ArrayList;
+import java.util.List;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -23,12 +25,15 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.TrackNotFoundException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
 import com.nandincube.jamjot.service.TrackAnnotationService;
+import com.nandincube.jamjot.dto.EditTrackNotesResponse;
 import com.nandincube.jamjot.dto.GenericResponse;
 import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.dto.TrackDTO;
+import com.nandincube.jamjot.dto.TrackNoteRequestDTO;
 
 @RestController
 @RequestMapping("/annotations")
@@ -45,6 +50,7 @@ public class TrackAnnotationsController {
          * This method retrieves all tracks in a specific playlist from Spotify using
          * the playlist ID.
          * 
+         * @param userToken
          * @param playlistID - Spotify ID of the playlist.
          * @return
          */
@@ -58,19 +64,28 @@ public class TrackAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") })
         })
         @GetMapping("/playlists/{playlistID}/tracks")
-        public ResponseEntity<?> getTracks(
+        public ResponseEntity<?> getTracks(Authentication userToken,
                         @Parameter(description = "The Spotify ID for the specified playlist", required = true) @PathVariable String playlistID) {
+                String userID = userToken.getName();
 
                 try {
                         ArrayList<TrackDTO> tracks = trackAnnotationService
-                                        .getPlaylistTracksInfoFromSpotify(playlistID);
+                                        .getPlaylistTracksInfoFromSpotify(userID, playlistID);
                         return ResponseEntity.ok(tracks);
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ex) { // if playlist is not found - i.e.
                                                                                     // playlist ID invalid
@@ -112,6 +127,10 @@ public class TrackAnnotationsController {
                                                         """))
 
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
         @GetMapping("/playlists/{playlistID}/track/{trackID}/note")
@@ -135,6 +154,10 @@ public class TrackAnnotationsController {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
 
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof TrackNotFoundException ex) { // if playlist is not found - i.e.
                                                                                  // playlist ID invalid
@@ -183,6 +206,10 @@ public class TrackAnnotationsController {
                                                              {"message": "Track Note Updated!"}
                                                         """))
                         }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
         @PutMapping("/playlists/{playlistID}/tracks/{trackID}/note")
@@ -206,6 +233,10 @@ public class TrackAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ep
                                         || e.getCause() instanceof TrackNotFoundException et) { // if playlist or track
@@ -223,6 +254,71 @@ public class TrackAnnotationsController {
                 }
         }
 
+        /**
+         * This method updates the notes for many tracks in a playlist for the
+         * authenticated user in one request. The tracks are verified against the
+         * playlist on Spotify together, and a result is returned for each track.
+         * 
+         * @param userToken
+         * @param playlistID
+         * @param notes
+         * @return
+         */
+        @Operation(summary = "Edit Track Notes", description = "Add or Update the notes for many tracks in a playlist at once")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "OK - The result for each track, in request order", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = EditTrackNotesResponse.class), examples = @ExampleObject(value = """
+                                                             {"items": [{"track_id": "4uLU6hMCjMI75M1A2tKUQC", "track_number": 14, "status": "UPDATED"}]}
+                                                        """))
+                        }),
+                        @ApiResponse(responseCode = "400", description = "Bad Request - No tracks or too many tracks given", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class)) }),
+                        @ApiResponse(responseCode = "404", description = "Not Found - Playlist not found", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class)) }),
+                        @ApiResponse(responseCode = "401", description = "Unauthorized - User authentication failed or user not found", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
+                        @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                                        @Content(mediaType = "*/*") }) })
+        @PutMapping("/playlists/{playlistID}/tracks/notes")
+        public ResponseEntity<?> editTrackNotes(Authentication userToken,
+                        @Parameter(description = "The Spotify ID for specified playlist", required = true) @PathVariable String playlistID,
+                        @RequestBody List<TrackNoteRequestDTO> notes) {
+
+                String userID = userToken.getName();
+
+                try {
+                        return ResponseEntity.ok(new EditTrackNotesResponse(
+                                        trackAnnotationService.editTrackNotes(userID, playlistID, notes)));
+                } catch (PlaylistNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (UserNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                        .body(new GenericResponse(e.getMessage()));
+                } catch (RuntimeException e) {
+                        if (e.getCause() instanceof PlaylistNotFoundException ex) { // playlist ID invalid
+                                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                                .body(new GenericResponse(ex.getMessage()));
+                        }
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                } catch (Exception e) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                }
+        }
+
         /**
          * This method deletes the note for a specific track in a playlist for the
          * authenticated user.
@@ -248,6 +344,10 @@ public class TrackAnnotationsController {
                                         @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
                                                              {"message": "Error: Could not find user or issue with user authentication (re-authentication required)!"}
                                                         """)) }),
+                        @ApiResponse(responseCode = "503", description = "Service Unavailable - Spotify is unavailable or rate limited", content = {
+                                        @Content(mediaType = "*/*", schema = @Schema(implementation = GenericResponse.class), examples = @ExampleObject(value = """
+                                                             {"message": "Error: Spotify is currently unavailable or rate limited, please try again later!"}
+                                                        """)) }),
                         @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
                                         @Content(mediaType = "*/*") }) })
         @DeleteMapping("/playlists/{playlistID}/tracks/{trackID}/note")
@@ -269,6 +369,10 @@ public class TrackAnnotationsController {
                 } catch (UserNotFoundException e) {
                         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                         .body(new GenericResponse(e.getMessage()));
+                } catch (SpotifyUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                                        .body(new GenericResponse(e.getMessage()));
                 } catch (RuntimeException e) {
                         if (e.getCause() instanceof PlaylistNotFoundException ep
                                         || e.getCause() instanceof TrackNotFoundException et) { // if playlist or track
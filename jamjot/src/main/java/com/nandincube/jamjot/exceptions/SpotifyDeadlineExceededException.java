@@ -0,0 +1,7 @@
+package com.nandincube.jamjot.exceptions;
+
+public class SpotifyDeadlineExceededException extends SpotifyUnavailableException {
+    public SpotifyDeadlineExceededException() {
+        super("Error: Spotify took too long to respond, please try again later!", 1);
+    }
+}
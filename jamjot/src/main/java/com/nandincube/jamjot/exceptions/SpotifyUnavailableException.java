@@ -0,0 +1,18 @@
+package com.nandincube.jamjot.exceptions;
+
+public class SpotifyUnavailableException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public SpotifyUnavailableException(long retryAfterSeconds) {
+        this("Error: Spotify is currently unavailable or rate limited, please try again later!", retryAfterSeconds);
+    }
+
+    protected SpotifyUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
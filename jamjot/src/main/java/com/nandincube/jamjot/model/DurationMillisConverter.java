@@ -0,0 +1,24 @@
+package com.nandincube.jamjot.model;
+
+import java.time.Duration;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a Duration as a whole number of milliseconds, so that it is kept in an
+ * integer column that can be indexed and compared cheaply.
+ */
+@Converter
+public class DurationMillisConverter implements AttributeConverter<Duration, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Duration duration) {
+        return duration == null ? null : duration.toMillis();
+    }
+
+    @Override
+    public Duration convertToEntityAttribute(Long millis) {
+        return millis == null ? null : Duration.ofMillis(millis);
+    }
+}
@@ -3,24 +3,29 @@ package com.nandincube.jamjot.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.MapsId;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.Table;
 
 @Entity(name="playlist_member")
 @Table(name="playlist_member")
+@NamedEntityGraph(name = PlaylistMember.WITH_TRACK, attributeNodes = @NamedAttributeNode("track")) // for timestamp validation
 public class PlaylistMember {
+    public static final String WITH_TRACK = "playlist_member.track";
 
     @EmbeddedId
     private PlaylistMemberID playlistMemberID;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @MapsId("trackID")
     @JoinColumn(name ="track_id")
     private Track track;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @MapsId("playlistID")
     @JoinColumn(name ="playlist_id")
     private Playlist playlist;
@@ -4,29 +4,41 @@ import java.time.Duration;
 
 import io.micrometer.common.lang.NonNull;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinColumns;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity(name="timestamp")
-@Table(name="timestamp")
+@Table(name="timestamp", indexes = {
+    // matches the lookup of a track's notes, in the order and with the cursor they are paged by
+    @Index(name = "timestamp_playlist_member_start_idx",
+        columnList = "playlist_id, track_id, track_number, start_time, timestamp_id")
+})
 public class Timestamp {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // IDs are allocated from the sequence in blocks, so new timestamps can be inserted in JDBC batches
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "timestamp_seq")
+    @SequenceGenerator(name = "timestamp_seq", sequenceName = "timestamp_seq", allocationSize = 50)
     @Column(name ="timestamp_id")
     private Long timestampID;
 
     @NonNull
     @Column(name = "start_time")
+    @Convert(converter = DurationMillisConverter.class) // milliseconds
     private Duration start;
 
     @NonNull
     @Column(name = "end_time")
+    @Convert(converter = DurationMillisConverter.class) // milliseconds
     private Duration end;
 
     @NonNull
@@ -34,7 +46,7 @@ public class Timestamp {
     private String note;
 
  
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumns({
         @JoinColumn(name = "playlist_id", referencedColumnName = "playlist_id"),
         @JoinColumn(name = "track_id", referencedColumnName = "track_id"),
@@ -0,0 +1,13 @@
+package com.nandincube.jamjot.repository;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.nandincube.jamjot.model.PlaylistMemberID;
+
+public interface PlaylistMemberBatchRepository {
+
+    // PostgreSQL only: the upsertNote of PlaylistMemberRepository, sent for all members as one JDBC batch.
+    // Returns the members for which no row was written
+    Set<PlaylistMemberID> upsertNotes(String userID, Map<PlaylistMemberID, String> notes);
+}
@@ -0,0 +1,59 @@
+package com.nandincube.jamjot.repository;
+
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.nandincube.jamjot.model.PlaylistMemberID;
+
+class PlaylistMemberBatchRepositoryImpl implements PlaylistMemberBatchRepository {
+    // no row is written unless the playlist belongs to the user
+    private static final String UPSERT_NOTE = """
+            INSERT INTO playlist_member (playlist_id, track_id, track_number, note)
+            SELECT p.playlist_id, ?, ?, ? FROM playlist p WHERE p.playlist_id = ? AND p.user_id = ?
+            ON CONFLICT (playlist_id, track_id, track_number) DO UPDATE SET note = EXCLUDED.note
+            """;
+
+    // rows are locked in key order, so concurrent batches over the same members cannot deadlock
+    private static final Comparator<Map.Entry<PlaylistMemberID, String>> KEY_ORDER = Comparator
+            .comparing((Map.Entry<PlaylistMemberID, String> note) -> note.getKey().getPlaylistID())
+            .thenComparing(note -> note.getKey().getTrackID())
+            .thenComparing(note -> note.getKey().getTrackNumber());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    PlaylistMemberBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Set<PlaylistMemberID> upsertNotes(String userID, Map<PlaylistMemberID, String> notes) {
+        List<Map.Entry<PlaylistMemberID, String>> sortedNotes = notes.entrySet().stream().sorted(KEY_ORDER).toList();
+        int[][] updateCounts = jdbcTemplate.batchUpdate(UPSERT_NOTE, sortedNotes, sortedNotes.size(),
+                (statement, note) -> {
+                    statement.setString(1, note.getKey().getTrackID());
+                    statement.setInt(2, note.getKey().getTrackNumber());
+                    statement.setString(3, note.getValue());
+                    statement.setString(4, note.getKey().getPlaylistID());
+                    statement.setString(5, userID);
+                });
+
+        Set<PlaylistMemberID> notWritten = new HashSet<>();
+        int index = 0;
+        for (int[] batch : updateCounts) {
+            for (int updateCount : batch) {
+                // SUCCESS_NO_INFO is only returned for statements that succeeded
+                if (updateCount == 0 || updateCount == Statement.EXECUTE_FAILED) {
+                    notWritten.add(sortedNotes.get(index).getKey());
+                }
+                index++;
+            }
+        }
+        return notWritten;
+    }
+}
@@ -1,13 +1,76 @@
 package com.nandincube.jamjot.repository;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.model.PlaylistMember;
 import com.nandincube.jamjot.model.PlaylistMemberID;
 
-public interface PlaylistMemberRepository extends JpaRepository<PlaylistMember, PlaylistMemberID> {
+public interface PlaylistMemberRepository extends JpaRepository<PlaylistMember, PlaylistMemberID>,
+        PlaylistMemberBatchRepository {
     Optional<PlaylistMember> findById(PlaylistMemberID playlistMemberID);
+
+    @EntityGraph(PlaylistMember.WITH_TRACK)
+    Optional<PlaylistMember> findWithTrackByPlaylistMemberIDAndPlaylist_User_UserID(PlaylistMemberID playlistMemberID,
+            String userID);
+
+    @Query("""
+            SELECT new com.nandincube.jamjot.dto.NoteDTO(pm.note)
+            FROM playlist_member pm
+            WHERE pm.playlistMemberID.playlistID = ?2
+            AND pm.playlistMemberID.trackID = ?3
+            AND pm.playlistMemberID.trackNumber = ?4
+            AND pm.playlist.user.userID = ?1
+            """)
+    Optional<NoteDTO> findNote(String userID, String playlistID, String trackID, int trackNumber);
+
+    @Query("""
+            SELECT pm
+            FROM playlist_member pm
+            WHERE pm.playlistMemberID.playlistID = ?2
+            AND pm.playlistMemberID.trackID IN ?3
+            AND pm.playlist.user.userID = ?1
+            """)
+    List<PlaylistMember> findByPlaylistIDAndTrackIDIn(String userID, String playlistID, Collection<String> trackIDs);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE playlist_member pm
+            SET pm.note = ?5
+            WHERE pm.playlistMemberID.playlistID = ?2
+            AND pm.playlistMemberID.trackID = ?3
+            AND pm.playlistMemberID.trackNumber = ?4
+            AND EXISTS (SELECT 1 FROM playlist p WHERE p.playlistID = ?2 AND p.user.userID = ?1)
+            """)
+    int updateNote(String userID, String playlistID, String trackID, int trackNumber, String note);
+
+    // PostgreSQL only: no row is written unless the playlist belongs to the user, and an existing note is kept
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO playlist_member (playlist_id, track_id, track_number, note)
+            SELECT p.playlist_id, ?3, ?4, '' FROM playlist p WHERE p.playlist_id = ?2 AND p.user_id = ?1
+            ON CONFLICT (playlist_id, track_id, track_number) DO UPDATE SET note = playlist_member.note
+            """, nativeQuery = true)
+    int upsert(String userID, String playlistID, String trackID, int trackNumber);
+
+    // PostgreSQL only: no row is written unless the playlist belongs to the user
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO playlist_member (playlist_id, track_id, track_number, note)
+            SELECT p.playlist_id, ?3, ?4, ?5 FROM playlist p WHERE p.playlist_id = ?2 AND p.user_id = ?1
+            ON CONFLICT (playlist_id, track_id, track_number) DO UPDATE SET note = EXCLUDED.note
+            """, nativeQuery = true)
+    int upsertNote(String userID, String playlistID, String trackID, int trackNumber, String note);
 }
\ No newline at end of file
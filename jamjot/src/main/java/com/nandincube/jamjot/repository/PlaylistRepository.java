@@ -4,10 +4,54 @@ package com.nandincube.jamjot.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.model.Playlist;
 
 public interface PlaylistRepository extends JpaRepository<Playlist, String> {
         Optional<Playlist> findByPlaylistIDAndUser_UserID(String playlistID, String userId);
 
+        boolean existsByPlaylistIDAndUser_UserID(String playlistID, String userId);
+
+        @Query("""
+                        SELECT new com.nandincube.jamjot.dto.NoteDTO(p.note)
+                        FROM playlist p
+                        WHERE p.playlistID = ?1 AND p.user.userID = ?2
+                        """)
+        Optional<NoteDTO> findNoteByPlaylistIDAndUserID(String playlistID, String userID);
+
+        @Transactional
+        @Modifying
+        @Query("""
+                        UPDATE playlist p
+                        SET p.note = ?3
+                        WHERE p.playlistID = ?1 AND p.user.userID = ?2
+                        """)
+        int updateNote(String playlistID, String userID, String note);
+
+        // PostgreSQL only: no row is written if the user does not exist or the playlist belongs to another user
+        @Transactional
+        @Modifying
+        @Query(value = """
+                        INSERT INTO playlist (playlist_id, name, note, user_id)
+                        SELECT ?1, ?3, NULL, u.user_id FROM users u WHERE u.user_id = ?2
+                        ON CONFLICT (playlist_id) DO UPDATE SET name = EXCLUDED.name
+                        WHERE playlist.user_id = EXCLUDED.user_id
+                        """, nativeQuery = true)
+        int upsert(String playlistID, String userID, String name);
+
+        // PostgreSQL only: no row is written if the user does not exist or the playlist belongs to another user
+        @Transactional
+        @Modifying
+        @Query(value = """
+                        INSERT INTO playlist (playlist_id, name, note, user_id)
+                        SELECT ?1, ?3, ?4, u.user_id FROM users u WHERE u.user_id = ?2
+                        ON CONFLICT (playlist_id) DO UPDATE SET name = EXCLUDED.name, note = EXCLUDED.note
+                        WHERE playlist.user_id = EXCLUDED.user_id
+                        """, nativeQuery = true)
+        int upsertNote(String playlistID, String userID, String name, String note);
+
 }
\ No newline at end of file
@@ -1,13 +1,16 @@
 package com.nandincube.jamjot.repository;
 
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteRow;
+import com.nandincube.jamjot.dto.TimestampNoteRow;
 import com.nandincube.jamjot.model.Timestamp;
 
 public interface TimestampRepository extends JpaRepository<Timestamp, Long> {
@@ -15,23 +18,54 @@ public interface TimestampRepository extends JpaRepository<Timestamp, Long> {
     @Query
     ("""
             SELECT t 
-            FROM timestamp t 
-            JOIN t.playlistMember pm
-            JOIN pm.playlist p
+            FROM timestamp t
+            JOIN playlist p ON p.playlistID = t.playlistMember.playlistMemberID.playlistID
             WHERE t.timestampID = ?1 AND p.user.userID = ?2
             """)
     Optional<Timestamp> findByTimestampIDAndUserID(Long timestampID, String userID); 
 
+    // the playlist is joined on the key columns stored in the timestamp row, so playlist_member is not read
     @Query(
-        """          
-                SELECT t
+        """
+                SELECT new com.nandincube.jamjot.dto.TimestampNoteRow(t.timestampID, t.start, t.end, t.note)
                 FROM timestamp t
-                WHERE t.playlistMember.playlist.playlistID = ?2
-                AND t.playlistMember.playlist.user.userID = ?1
-                AND t.playlistMember.track.trackID = ?3
+                JOIN playlist p ON p.playlistID = t.playlistMember.playlistMemberID.playlistID
+                WHERE p.playlistID = ?2
+                AND p.user.userID = ?1
+                AND t.playlistMember.playlistMemberID.trackID = ?3
                 AND t.playlistMember.playlistMemberID.trackNumber = ?4
+                ORDER BY t.start, t.timestampID
     """
     )
-    List<Timestamp> findByPlaylistMemberID(String userID, String playlistID, String trackID, int trackNumber);
-        
-}
\ No newline at end of file
+    List<TimestampNoteRow> findNotesByPlaylistMemberID(String userID, String playlistID, String trackID,
+            int trackNumber, Limit limit);
+
+    @Query(
+        """
+                SELECT new com.nandincube.jamjot.dto.TimestampNoteRow(t.timestampID, t.start, t.end, t.note)
+                FROM timestamp t
+                JOIN playlist p ON p.playlistID = t.playlistMember.playlistMemberID.playlistID
+                WHERE p.playlistID = ?2
+                AND p.user.userID = ?1
+                AND t.playlistMember.playlistMemberID.trackID = ?3
+                AND t.playlistMember.playlistMemberID.trackNumber = ?4
+                AND (t.start > ?5 OR (t.start = ?5 AND t.timestampID > ?6))
+                ORDER BY t.start, t.timestampID
+    """
+    )
+    List<TimestampNoteRow> findNotesByPlaylistMemberIDAfter(String userID, String playlistID, String trackID,
+            int trackNumber, Duration afterStart, Long afterID, Limit limit);
+
+    @Query(
+        """
+                SELECT new com.nandincube.jamjot.dto.PlaylistTimestampNoteRow(t.playlistMember.playlistMemberID.trackID,
+                        t.playlistMember.playlistMemberID.trackNumber, t.timestampID, t.start, t.end, t.note)
+                FROM timestamp t
+                JOIN playlist p ON p.playlistID = t.playlistMember.playlistMemberID.playlistID
+                WHERE p.playlistID = ?2
+                AND p.user.userID = ?1
+    """
+    )
+    List<PlaylistTimestampNoteRow> findNotesByPlaylistID(String userID, String playlistID);
+
+}
@@ -0,0 +1,11 @@
+package com.nandincube.jamjot.repository;
+
+import java.util.List;
+
+import com.nandincube.jamjot.model.Track;
+
+public interface TrackBatchRepository {
+
+    // PostgreSQL only: the upsert of TrackRepository, sent for all tracks as one JDBC batch
+    void upsertAll(List<Track> tracks);
+}
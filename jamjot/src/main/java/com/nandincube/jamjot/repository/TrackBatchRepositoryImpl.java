@@ -0,0 +1,38 @@
+package com.nandincube.jamjot.repository;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.nandincube.jamjot.model.Track;
+
+class TrackBatchRepositoryImpl implements TrackBatchRepository {
+    // duration is stored in nanoseconds as mapped by Hibernate
+    private static final String UPSERT = """
+            INSERT INTO track (track_id, name, artists, duration)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (track_id) DO UPDATE
+            SET name = EXCLUDED.name, artists = EXCLUDED.artists, duration = EXCLUDED.duration
+            """;
+
+    // rows are locked in key order, so concurrent batches over the same tracks cannot deadlock
+    private static final Comparator<Track> KEY_ORDER = Comparator.comparing(Track::getTrackID);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    TrackBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsertAll(List<Track> tracks) {
+        List<Track> sortedTracks = tracks.stream().sorted(KEY_ORDER).toList();
+        jdbcTemplate.batchUpdate(UPSERT, sortedTracks, sortedTracks.size(), (statement, track) -> {
+            statement.setString(1, track.getTrackID());
+            statement.setString(2, track.getName());
+            statement.setString(3, track.getArtists());
+            statement.setLong(4, track.getDuration().toNanos());
+        });
+    }
+}
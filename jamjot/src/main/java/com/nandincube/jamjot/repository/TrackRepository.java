@@ -1,10 +1,29 @@
 package com.nandincube.jamjot.repository;
 
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.nandincube.jamjot.model.Track;
 
-public interface TrackRepository extends JpaRepository<Track, String> {
+public interface TrackRepository extends JpaRepository<Track, String>, TrackBatchRepository {
+
+    @Query("SELECT t.trackID FROM track t WHERE t.trackID IN ?1")
+    List<String> findTrackIDsByTrackIDIn(Collection<String> trackIDs);
+
+    // PostgreSQL only, duration is stored in nanoseconds as mapped by Hibernate
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO track (track_id, name, artists, duration)
+            VALUES (?1, ?2, ?3, ?4)
+            ON CONFLICT (track_id) DO UPDATE
+            SET name = EXCLUDED.name, artists = EXCLUDED.artists, duration = EXCLUDED.duration
+            """, nativeQuery = true)
+    int upsert(String trackID, String name, String artists, long durationNanos);
     
 }
\ No newline at end of file
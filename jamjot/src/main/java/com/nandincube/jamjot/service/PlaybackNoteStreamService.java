@@ -0,0 +1,287 @@
+package com.nandincube.jamjot.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.nandincube.jamjot.dto.CurrentlyPlayingDTO;
+import com.nandincube.jamjot.dto.PlaybackNotesEvent;
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteDTO;
+import com.nandincube.jamjot.dto.TimestampNoteRow;
+import com.nandincube.jamjot.service.TimestampIntervalCache.TrackKey;
+import com.nandincube.jamjot.spotify.SpotifyAuthorizedClientService;
+import com.nandincube.jamjot.spotify.SpotifyRequestPriority;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Streams the timestamp notes covering a user's Spotify playback position to
+ * the user's subscribers as server-sent events. Each user with at least one
+ * subscriber has a single poller, run on a scheduler shared by all users, that
+ * reads the user's currently playing track from Spotify and is stopped once the
+ * last subscriber leaves. The notes of the playlist being played come from the
+ * cached interval trees of its tracks, and the poller remembers the next
+ * position at which the covering notes change, so while playback moves forward
+ * within the same track most polls need neither a DB query nor a tree lookup.
+ * An event is only pushed when the covering notes change.
+ */
+@Service
+public class PlaybackNoteStreamService {
+    private static final String CURRENTLY_PLAYING_URL = "https://api.spotify.com/v1/me/player/currently-playing";
+    private static final String EVENT_NAME = "notes";
+    private static final String METRIC_NAME = "jamjot.playback.stream";
+
+    private final RestClient restClient;
+    private final SpotifyAuthorizedClientService authorizedClientService;
+    private final TimestampAnnotationService timestampAnnotationService;
+    private final ScheduledExecutorService scheduler;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final ConcurrentHashMap<String, Poller> pollers = new ConcurrentHashMap<>();
+    private final Counter polls;
+    private final Counter failedPolls;
+    private final Counter events;
+
+    public PlaybackNoteStreamService(RestClient restClient, SpotifyAuthorizedClientService authorizedClientService,
+            TimestampAnnotationService timestampAnnotationService, MeterRegistry meterRegistry,
+            @Value("${jamjot.playback-stream.poll-interval:2s}") Duration pollInterval,
+            @Value("${jamjot.playback-stream.poller-threads:4}") int pollerThreads,
+            @Value("${jamjot.playback-stream.timeout:30m}") Duration timeout) {
+        this.restClient = restClient;
+        this.authorizedClientService = authorizedClientService;
+        this.timestampAnnotationService = timestampAnnotationService;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        this.scheduler = Executors.newScheduledThreadPool(pollerThreads,
+                Thread.ofPlatform().name("playback-poller-", 0).daemon().factory());
+        this.polls = meterRegistry.counter(METRIC_NAME + ".polls", "result", "success");
+        this.failedPolls = meterRegistry.counter(METRIC_NAME + ".polls", "result", "failure");
+        this.events = meterRegistry.counter(METRIC_NAME + ".events");
+        meterRegistry.gauge(METRIC_NAME + ".pollers", pollers, Map::size);
+    }
+
+    /**
+     * This method subscribes to the playback note stream of a user. The user's
+     * poller is started if this is the first subscriber, and the last event sent
+     * to the other subscribers is sent straight away.
+     *
+     * @param userID               - ID of the authenticated user.
+     * @param clientRegistrationId - ID of the OAuth2 client registration the
+     *                             user signed in with.
+     * @return SseEmitter - The emitter the events are sent to.
+     */
+    public SseEmitter subscribe(String userID, String clientRegistrationId) {
+        SseEmitter emitter = createEmitter();
+        emitter.onCompletion(() -> unsubscribe(userID, emitter));
+        emitter.onTimeout(() -> unsubscribe(userID, emitter));
+        emitter.onError(error -> unsubscribe(userID, emitter));
+
+        Poller poller = pollers.compute(userID, (id, existing) -> {
+            Poller current = existing != null ? existing : new Poller(userID, clientRegistrationId);
+            current.emitters.add(emitter);
+            return current;
+        });
+        poller.start();
+
+        PlaybackNotesEvent last = poller.lastEvent;
+        if (last != null) {
+            send(emitter, last);
+        }
+        return emitter;
+    }
+
+    /**
+     * This method creates the emitter the events of a new subscriber are sent to.
+     *
+     * @return SseEmitter - The emitter, which times out after the stream timeout.
+     */
+    protected SseEmitter createEmitter() {
+        return new SseEmitter(timeout.toMillis());
+    }
+
+    private void unsubscribe(String userID, SseEmitter emitter) {
+        pollers.computeIfPresent(userID, (id, poller) -> {
+            poller.emitters.remove(emitter);
+            if (poller.emitters.isEmpty()) {
+                poller.stop();
+                return null;
+            }
+            return poller;
+        });
+    }
+
+    private void send(SseEmitter emitter, PlaybackNotesEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(event));
+        } catch (IOException | IllegalStateException e) { // the subscriber has gone
+            emitter.completeWithError(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pollers.values().forEach(poller -> poller.emitters.forEach(SseEmitter::complete));
+    }
+
+    /**
+     * Polls the playback state of one user and pushes the notes covering the
+     * playback position to the user's subscribers. The scheduler never runs two
+     * polls of the same poller at once, so the playback state is only touched by
+     * one thread at a time.
+     */
+    private final class Poller implements Runnable {
+        private static final Comparator<TrackKey> TRACK_ORDER = Comparator.comparingInt(TrackKey::trackNumber);
+
+        private final String userID;
+        private final String clientRegistrationId;
+        private final Set<SseEmitter> emitters = new CopyOnWriteArraySet<>();
+        private ScheduledFuture<?> task;
+        private boolean stopped;
+        private volatile PlaybackNotesEvent lastEvent;
+
+        // playback state at the last lookup of the covering notes
+        private String playlistID;
+        private String trackID;
+        private Map<TrackKey, TimestampIntervalTree> intervals;
+        private long progress;
+        private long nextChange;
+
+        private Poller(String userID, String clientRegistrationId) {
+            this.userID = userID;
+            this.clientRegistrationId = clientRegistrationId;
+        }
+
+        private synchronized void start() {
+            if (task == null && !stopped) { // a poller is not restarted once its last subscriber has left
+                task = scheduler.scheduleWithFixedDelay(this, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void stop() {
+            stopped = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                poll();
+                polls.increment();
+            } catch (RuntimeException e) { // Spotify is unavailable or the token is being renewed, retried next poll
+                failedPolls.increment();
+            }
+        }
+
+        private void poll() {
+            OAuth2AuthorizedClient authorizedClient = authorizedClientService
+                    .loadAuthorizedClient(clientRegistrationId, userID);
+            if (authorizedClient == null) { // signed out, so there is nothing left to poll with
+                emitters.forEach(SseEmitter::complete);
+                return;
+            }
+
+            CurrentlyPlayingDTO playing = currentlyPlaying(authorizedClient.getAccessToken().getTokenValue());
+            boolean active = playing != null && playing.item() != null && playing.progress_ms() != null;
+            String currentPlaylistID = active ? playing.playlistID() : null;
+            String currentTrackID = active ? playing.item().id() : null;
+            long currentProgress = active ? playing.progress_ms() : 0;
+
+            Map<TrackKey, TimestampIntervalTree> currentIntervals = currentPlaylistID == null ? Map.of()
+                    : timestampAnnotationService.getTimestampIntervals(userID, currentPlaylistID);
+
+            // the covering notes cannot have changed while playback moves forward through the same notes
+            if (lastEvent != null && Objects.equals(currentPlaylistID, playlistID)
+                    && Objects.equals(currentTrackID, trackID) && currentIntervals == intervals
+                    && currentProgress >= progress && currentProgress < nextChange) {
+                progress = currentProgress;
+                return;
+            }
+
+            Duration position = Duration.ofMillis(currentProgress);
+            ArrayList<PlaylistTimestampNoteDTO> notes = new ArrayList<>();
+            long currentNextChange = Long.MAX_VALUE;
+            List<TrackKey> tracks = currentIntervals.keySet().stream()
+                    .filter(track -> track.trackID().equals(currentTrackID))
+                    .sorted(TRACK_ORDER)
+                    .toList();
+            for (TrackKey track : tracks) {
+                TimestampIntervalTree tree = currentIntervals.get(track);
+                for (TimestampNoteRow row : tree.overlapping(position, position)) {
+                    notes.add(new PlaylistTimestampNoteDTO(track.trackID(), track.trackNumber(), row.toResponse()));
+                }
+                Duration next = tree.nextChangeAfter(position);
+                if (next != null) {
+                    currentNextChange = Math.min(currentNextChange, next.toMillis());
+                }
+            }
+
+            boolean changed = lastEvent == null || !Objects.equals(currentPlaylistID, playlistID)
+                    || !Objects.equals(currentTrackID, trackID) || !notes.equals(lastEvent.items());
+
+            playlistID = currentPlaylistID;
+            trackID = currentTrackID;
+            intervals = currentIntervals;
+            progress = currentProgress;
+            nextChange = currentNextChange;
+
+            if (changed) {
+                PlaybackNotesEvent event = new PlaybackNotesEvent(currentPlaylistID, currentTrackID,
+                        active ? currentProgress : null, notes);
+                lastEvent = event;
+                events.increment();
+                emitters.forEach(emitter -> send(emitter, event));
+            }
+        }
+
+        /**
+         * This method reads the user's currently playing track from Spotify, with
+         * background priority. The user is set as the current authentication so that
+         * the request is coalesced and cached per user, while the OAuth2 interceptor,
+         * which needs a servlet request, is skipped in favour of the stored token.
+         *
+         * @param accessToken - The user's Spotify access token.
+         * @return CurrentlyPlayingDTO - The playback state, or null if nothing is
+         *         playing.
+         */
+        private CurrentlyPlayingDTO currentlyPlaying(String accessToken) {
+            SecurityContext previous = SecurityContextHolder.getContext();
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(userID, null, List.of()));
+            SecurityContextHolder.setContext(context);
+            try {
+                return SpotifyRequestPriority.runInBackground(() -> restClient.get()
+                        .uri(CURRENTLY_PLAYING_URL)
+                        .headers(headers -> headers.setBearerAuth(accessToken))
+                        .retrieve()
+                        .body(CurrentlyPlayingDTO.class)); // no body when nothing is playing
+            } finally {
+                SecurityContextHolder.setContext(previous);
+            }
+        }
+    }
+}
@@ -1,31 +1,52 @@
 package com.nandincube.jamjot.service;
 
 import java.util.ArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
 import com.nandincube.jamjot.dto.PlaylistDTO;
+import com.nandincube.jamjot.dto.PlaylistSnapshotDTO;
 import com.nandincube.jamjot.dto.GetPlaylistsResponse;
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
 import com.nandincube.jamjot.model.Playlist;
 import com.nandincube.jamjot.model.User;
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache;
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache.Ownership;
+import com.nandincube.jamjot.spotify.SpotifyDegradedMode;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
 
 @Service
 public class PlaylistAnnotationService {
     private final PlaylistService playlistService;
     private final UserService userService;
     private final RestClient restClient;
+    private final SpotifyPageFetcher spotifyPageFetcher;
+    private final PlaylistOwnershipCache playlistOwnershipCache;
+    private final PlaylistLocks playlistLocks;
+    private final boolean nativeUpsert;
 
     private static final String SPOTIFY_BASE_URL = "https://api.spotify.com/v1";
+    private static final int PLAYLISTS_PAGE_LIMIT = 50; // maximum page size allowed by Spotify
 
     public PlaylistAnnotationService(PlaylistService playlistService,
             UserService userService,
-            RestClient restClient) {
+            RestClient restClient,
+            SpotifyPageFetcher spotifyPageFetcher,
+            PlaylistOwnershipCache playlistOwnershipCache,
+            PlaylistLocks playlistLocks,
+            @Value("${jamjot.persistence.native-upsert:true}") boolean nativeUpsert) {
         this.playlistService = playlistService;
         this.userService = userService;
         this.restClient = restClient;
+        this.spotifyPageFetcher = spotifyPageFetcher;
+        this.playlistOwnershipCache = playlistOwnershipCache;
+        this.playlistLocks = playlistLocks;
+        this.nativeUpsert = nativeUpsert;
     }
 
     /**
@@ -36,29 +57,31 @@ public class PlaylistAnnotationService {
      *         including name and spotify ID.
      */
     public ArrayList<PlaylistDTO> getPlaylistsInfoFromSpotify() {
-        ArrayList<PlaylistDTO> playlistDTOs = new ArrayList<>();
-        String next = SPOTIFY_BASE_URL + "/me/playlists";
-        do {
-
-            GetPlaylistsResponse response = restClient.get()
-                    .uri(next)
-                    .retrieve()
-                    .onStatus(status -> status == HttpStatus.UNAUTHORIZED,
-                            (req, res) -> {
-                                throw new UserNotFoundException();
-                            })
-                    .body(GetPlaylistsResponse.class);
-
-            if (response == null) {
-                throw new RuntimeException("Failed to retrieve playlists from Spotify API");
-            }
+        String url = SPOTIFY_BASE_URL + "/me/playlists";
+        return spotifyPageFetcher.fetchAll(url, PLAYLISTS_PAGE_LIMIT, this::getPlaylistsPageFromSpotify);
+    }
 
-            playlistDTOs.addAll(response.items());
-            next = response.next();
+    /**
+     * This method retrieves a single page of the authenticated user's playlists.
+     * 
+     * @param pageURL - The URL of the page of playlists.
+     * @return GetPlaylistsResponse - The page of playlists.
+     */
+    private GetPlaylistsResponse getPlaylistsPageFromSpotify(String pageURL) {
+        GetPlaylistsResponse response = restClient.get()
+                .uri(pageURL)
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.UNAUTHORIZED,
+                        (req, res) -> {
+                            throw new UserNotFoundException();
+                        })
+                .body(GetPlaylistsResponse.class);
 
-        } while (next != null);
+        if (response == null) {
+            throw new RuntimeException("Failed to retrieve playlists from Spotify API");
+        }
 
-        return playlistDTOs;
+        return response;
     }
 
     /**
@@ -91,8 +114,41 @@ public class PlaylistAnnotationService {
         return playlistDTO;
     }
 
+    /**
+     * This method retrieves the current snapshot ID of a playlist from Spotify API.
+     * Only the snapshot ID is requested, so this is a cheap way of checking
+     * whether the contents of a playlist have changed.
+     * 
+     * @param playlistID - The Spotify ID of the playlist.
+     * @return String - The snapshot ID of the playlist.
+     */
+    protected String getPlaylistSnapshotFromSpotify(String playlistID) {
+        String playlistURL = SPOTIFY_BASE_URL + "/playlists/" + playlistID + "?fields=snapshot_id";
+
+        PlaylistSnapshotDTO snapshotDTO = restClient.get()
+                .uri(playlistURL)
+                .retrieve()
+                .onStatus(status -> status == HttpStatus.NOT_FOUND, (req, res) -> {
+                    throw new RuntimeException(new PlaylistNotFoundException());
+                })
+                .onStatus(status -> status == HttpStatus.FORBIDDEN, (req, res) -> {
+                    throw new RuntimeException(new PlaylistNotFoundException());
+                })
+                .onStatus(status -> status == HttpStatus.UNAUTHORIZED,
+                        (req, res) -> {
+                            throw new UserNotFoundException();
+                        })
+                .onStatus(status -> status == HttpStatus.BAD_REQUEST, (req, res) -> {
+                    throw new RuntimeException(new PlaylistNotFoundException());
+                })
+                .body(PlaylistSnapshotDTO.class);
+
+        return snapshotDTO == null ? null : snapshotDTO.snapshot_id();
+    }
+
     /**
      * This method checks if a playlist exists on Spotify and belongs to the user.
+     * The result is cached per user and playlist, see PlaylistOwnershipCache.
      * 
      * @param playlistID - Spotify ID of the playlist.
      * @param userID     - Spotify ID of the user.
@@ -100,11 +156,27 @@ public class PlaylistAnnotationService {
      *         otherwise.
      */
     protected boolean playlistExistsOnSpotify(String playlistID, String userID) {
-        PlaylistDTO playlist = getPlaylistInfoFromSpotify(playlistID);
-        if (playlist == null || !playlist.owner().id().equals(userID)) {
-            return false;
+        Ownership ownership = playlistOwnershipCache.get(userID, playlistID);
+
+        if (ownership == null) {
+            try {
+                PlaylistDTO playlist = getPlaylistInfoFromSpotify(playlistID);
+                ownership = (playlist == null || !playlist.owner().id().equals(userID))
+                        ? Ownership.NOT_OWNED
+                        : Ownership.OWNED;
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof PlaylistNotFoundException) { // not found or forbidden on Spotify
+                    playlistOwnershipCache.put(userID, playlistID, Ownership.NOT_FOUND);
+                }
+                throw e;
+            }
+            playlistOwnershipCache.put(userID, playlistID, ownership);
+        }
+
+        if (ownership == Ownership.NOT_FOUND) {
+            throw new RuntimeException(new PlaylistNotFoundException());
         }
-        return true;
+        return ownership == Ownership.OWNED;
     }
 
     /**
@@ -133,16 +205,14 @@ public class PlaylistAnnotationService {
      *         otherwise.
      */
     protected Boolean playlistExistsInDB(String userID, String playlistID) {
-        try {
-            getPlaylistFromDB(userID, playlistID);
-        } catch (PlaylistNotFoundException e) {
-            return false;
-        }
-        return true;
+        return playlistService.existsByPlaylistIdandUserId(playlistID, userID);
     }
 
     /**
-     * This method retrieves the note for a specific playlist for the user.
+     * This method retrieves the note for a specific playlist for the user. Only
+     * the note is read from the jamjot DB, without loading the playlist entity. If
+     * the playlist is not in the jamjot DB and Spotify is unavailable, an empty
+     * note is returned and the response is marked as degraded.
      * 
      * @param userID     - ID of the user.
      * @param playlistID - Spotify ID of the playlist.
@@ -152,10 +222,18 @@ public class PlaylistAnnotationService {
      */
     public String getPlaylistNote(String userID, String playlistID) throws PlaylistNotFoundException {
         try {
-            Playlist playlist = getPlaylistFromDB(userID, playlistID);
-            return playlist.getNote();
+            return playlistService.findNoteByPlaylistIdandUserId(playlistID, userID)
+                    .orElseThrow(PlaylistNotFoundException::new)
+                    .getNote();
         } catch (PlaylistNotFoundException e) {
-            if (playlistExistsOnSpotify(playlistID, userID)) { // Playlist exists on Spotify but not in jamjot DB
+            boolean existsOnSpotify;
+            try {
+                existsOnSpotify = playlistExistsOnSpotify(playlistID, userID);
+            } catch (SpotifyUnavailableException unavailable) { // cannot be checked, but no note is stored either way
+                SpotifyDegradedMode.markDegraded();
+                return "";
+            }
+            if (existsOnSpotify) { // Playlist exists on Spotify but not in jamjot DB
                 return "";
             } else {
                 throw new PlaylistNotFoundException();
@@ -166,31 +244,32 @@ public class PlaylistAnnotationService {
     /**
      * This method edits the note for a specific playlist. If the playlist does not
      * exist in the jamjot DB but exists on Spotify, it creates a new playlist
-     * entity in the jamjot DB and then updates the note.
+     * entity in the jamjot DB with the note. The note of a stored playlist is
+     * updated in a single statement, and no transaction is open while Spotify is
+     * called. A missing playlist is created under the lock of the user and
+     * playlist, so concurrent first edits verify and save it only once.
      * 
      * @param userID     - ID of the user.
      * @param playlistID - Spotify ID of the playlist.
      * @param note       - The new note to be set for the playlist.
-     * @return Playlist - The updated playlist entity.
      * @throws PlaylistNotFoundException - If the playlist does not exist or does
      *                                   not belong to the user.
      * @throws UserNotFoundException     - If the user does not exist in the jamjot
      *                                   DB.
      */
-    public Playlist editPlaylistNote(String userID, String playlistID, String note)
+    public void editPlaylistNote(String userID, String playlistID, String note)
             throws PlaylistNotFoundException, UserNotFoundException {
-        Playlist playlist;
-        try {
-            playlist = getPlaylistFromDB(userID, playlistID);
-        } catch (PlaylistNotFoundException e) {
-            if (playlistExistsOnSpotify(playlistID, userID)) { // Playlist exists on Spotify but not in jamjot DB
-                playlist = createNewPlaylistEntity(userID, playlistID);
-            } else {
-                throw new PlaylistNotFoundException();
-            }
+        if (playlistService.updateNote(playlistID, userID, note)) {
+            return;
         }
-        playlist.setNote(note);
-        return playlistService.save(playlist);
+
+        playlistLocks.withPlaylistLock(userID, playlistID, () -> {
+            // the playlist may have been saved by a request that held the lock before
+            if (!playlistService.updateNote(playlistID, userID, note)) {
+                savePlaylistEntity(userID, playlistID, note);
+            }
+            return null;
+        });
     }
 
     /**
@@ -216,20 +295,21 @@ public class PlaylistAnnotationService {
      * 
      * @param userID     - ID of the user.
      * @param playlistID - Spotify ID of the playlist.
-     * @return Playlist - The updated playlist entity with the note deleted.
      * @throws PlaylistNotFoundException - If the playlist does not exist or does
      *                                   not belong to the user.
      * @throws UserNotFoundException     - If the user does not exist in the jamjot
      *                                   DB.
      */
-    public Playlist deletePlaylistNote(String userID, String playlistID)
+    public void deletePlaylistNote(String userID, String playlistID)
             throws PlaylistNotFoundException, UserNotFoundException {
-        return editPlaylistNote(userID, playlistID, "");
+        editPlaylistNote(userID, playlistID, "");
     }
 
     /**
      * This method creates and saves a new playlist entity in the jamjot DB if it
-     * does not exist.
+     * does not exist. This runs under the lock of the user and playlist, so when
+     * several requests need the same playlist at once, it is verified on Spotify
+     * and saved only once.
      * 
      * @param userID     - ID of the authenticated user.
      * @param playlistID - Spotify ID of the playlist.
@@ -240,13 +320,63 @@ public class PlaylistAnnotationService {
      */
     protected void saveNewPlaylistEntity(String userID, String playlistID)
             throws PlaylistNotFoundException, UserNotFoundException {
+        playlistLocks.withPlaylistLock(userID, playlistID, () -> {
+            // the playlist may have been saved by a request that held the lock before
+            if (!playlistExistsInDB(userID, playlistID)) {
+                savePlaylistEntity(userID, playlistID, null);
+            }
+            return null;
+        });
+    }
 
-        if (playlistExistsOnSpotify(playlistID, userID)) {
+    /**
+     * This method verifies a playlist on Spotify and saves it in the jamjot DB.
+     * With native upserts enabled, a playlist saved concurrently by another node
+     * is kept.
+     * 
+     * @param userID     - ID of the authenticated user.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param note       - The note for the playlist, or null for no note.
+     * @throws PlaylistNotFoundException - If the playlist does not exist on Spotify
+     *                                   or belongs to another user.
+     * @throws UserNotFoundException     - If the user does not exist in the jamjot
+     *                                   DB.
+     */
+    private void savePlaylistEntity(String userID, String playlistID, String note)
+            throws PlaylistNotFoundException, UserNotFoundException {
+
+        if (!playlistExistsOnSpotify(playlistID, userID)) {
+            throw new PlaylistNotFoundException();
+        }
+
+        if (nativeUpsert) {
+            String name = getPlaylistInfoFromSpotify(playlistID).name();
+            boolean saved = note == null ? playlistService.upsert(playlistID, userID, name)
+                    : playlistService.upsertNote(playlistID, userID, name, note);
+            if (!saved) {
+                throwPlaylistNotSaved(userID);
+            }
+        } else {
             Playlist playlist = createNewPlaylistEntity(userID, playlistID);
+            playlist.setNote(note);
             playlistService.save(playlist);
-        } else {
-            throw new PlaylistNotFoundException();
         }
 
     }
+
+    /**
+     * This method explains why an upsert of a playlist wrote no row: either the
+     * user is not stored, or the playlist is stored for another user.
+     * 
+     * @param userID - ID of the authenticated user.
+     * @throws PlaylistNotFoundException - If the playlist belongs to another user.
+     * @throws UserNotFoundException     - If the user does not exist in the jamjot
+     *                                   DB.
+     */
+    private void throwPlaylistNotSaved(String userID) throws PlaylistNotFoundException, UserNotFoundException {
+        if (userService.findById(userID).isEmpty()) {
+            throw new UserNotFoundException();
+        }
+        throw new PlaylistNotFoundException();
+    }
 }
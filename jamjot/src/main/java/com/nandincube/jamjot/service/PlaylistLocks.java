@@ -0,0 +1,121 @@
+package com.nandincube.jamjot.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Serialises the lazy creation of a user's playlist in the jamjot DB, so that
+ * when many requests for the same user and playlist arrive together, only the
+ * first verifies the playlist on Spotify and saves it, and the others find it
+ * saved once they get the lock. Keys are spread over a fixed number of lock
+ * stripes in this process. In advisory lock mode, a PostgreSQL session level
+ * advisory lock on the key is also held, so that the creation is serialised
+ * across every node sharing the DB. That lock holds a DB connection while the
+ * action runs.
+ */
+@Component
+public class PlaylistLocks {
+    private static final String METRIC_NAME = "jamjot.playlist.lock.wait";
+
+    private final ReentrantLock[] locks;
+    private final boolean advisory;
+    private final DataSource dataSource;
+    private final Timer waitTimer;
+
+    public PlaylistLocks(MeterRegistry meterRegistry, DataSource dataSource,
+            @Value("${jamjot.persistence.playlist-lock.stripes:256}") int stripes,
+            @Value("${jamjot.persistence.playlist-lock.advisory:false}") boolean advisory) {
+        this.locks = new ReentrantLock[Math.max(1, stripes)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.advisory = advisory;
+        this.dataSource = dataSource;
+        this.waitTimer = meterRegistry.timer(METRIC_NAME, "mode", advisory ? "advisory" : "local");
+    }
+
+    /**
+     * An action run under a playlist lock, which may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface LockedAction<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * This method runs the given action while holding the lock of the given user
+     * and playlist, so it does not overlap with any other action run for the same
+     * user and playlist.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param action     - The action to run.
+     * @return T - The result of the action.
+     * @throws E - If the action throws it.
+     */
+    public <T, E extends Exception> T withPlaylistLock(String userID, String playlistID, LockedAction<T, E> action)
+            throws E {
+        long key = key(userID, playlistID);
+        ReentrantLock lock = locks[Math.floorMod(Long.hashCode(key), locks.length)];
+
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (!advisory) {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return action.run();
+            }
+            return withAdvisoryLock(key, start, action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method runs the given action while holding the PostgreSQL advisory lock
+     * of the given key on a connection of its own.
+     *
+     * @param key    - The key of the user and playlist.
+     * @param start  - When the caller started waiting for the lock, in
+     *               nanoseconds.
+     * @param action - The action to run.
+     * @return T - The result of the action.
+     * @throws E - If the action throws it.
+     */
+    private <T, E extends Exception> T withAdvisoryLock(long key, long start, LockedAction<T, E> action) throws E {
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, "SELECT pg_advisory_lock(?)", key);
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            try {
+                return action.run();
+            } finally {
+                execute(connection, "SELECT pg_advisory_unlock(?)", key);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to take the playlist advisory lock", e);
+        }
+    }
+
+    private static void execute(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, key);
+            statement.execute();
+        }
+    }
+
+    // advisory locks take a 64-bit key, colliding keys only serialise unrelated creations
+    private static long key(String userID, String playlistID) {
+        return ((long) userID.hashCode() << 32) | (playlistID.hashCode() & 0xffffffffL);
+    }
+}
@@ -1,14 +1,19 @@
 package com.nandincube.jamjot.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import org.springframework.stereotype.Service;
 
+import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.model.PlaylistMember;
 import com.nandincube.jamjot.model.PlaylistMemberID;
 import com.nandincube.jamjot.repository.PlaylistMemberRepository;
 
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 
@@ -16,10 +21,13 @@ import jakarta.validation.Validator;
 public class PlaylistMemberService {
     private final PlaylistMemberRepository playlistMemberRepository;
     private final Validator validator;
+    private final EntityManager entityManager;
 
-    public PlaylistMemberService(PlaylistMemberRepository playlistMemberRepository, Validator validator) {
+    public PlaylistMemberService(PlaylistMemberRepository playlistMemberRepository, Validator validator,
+            EntityManager entityManager) {
         this.playlistMemberRepository = playlistMemberRepository;
         this.validator = validator;
+        this.entityManager = entityManager;
     }
 
 
@@ -31,6 +39,16 @@ public class PlaylistMemberService {
         return playlistMemberRepository.save(trackInPlaylist);
     }
 
+    // persists a new member without the read merge() does first, so must be called within a transaction
+    public PlaylistMember create(PlaylistMember trackInPlaylist){
+        String validationErrors = validatePlaylist(trackInPlaylist);
+        if(validationErrors != null){
+            throw new IllegalArgumentException("Playlist member contains invalid information: \n" + validationErrors);
+        }
+        entityManager.persist(trackInPlaylist);
+        return trackInPlaylist;
+    }
+
 
     private String validatePlaylist(PlaylistMember trackInPlaylist){
         StringBuilder errors = new StringBuilder();
@@ -52,4 +70,40 @@ public class PlaylistMemberService {
     public Optional<PlaylistMember> findById(PlaylistMemberID playlistMemberID){
         return playlistMemberRepository.findById(playlistMemberID);
     }
+
+    // reads only the note, without loading the playlist member entity, if the playlist belongs to the user
+    public Optional<NoteDTO> findNote(String userID, String playlistID, String trackID, int trackNumber){
+        return playlistMemberRepository.findNote(userID, playlistID, trackID, trackNumber);
+    }
+
+    // members of the user's playlist for any of the tracks, at any track number
+    public List<PlaylistMember> findByPlaylistIdAndTrackIds(String userID, String playlistID,
+            Collection<String> trackIDs){
+        return playlistMemberRepository.findByPlaylistIDAndTrackIDIn(userID, playlistID, trackIDs);
+    }
+
+    // also loads the track, in the same statement, if the playlist belongs to the user
+    public Optional<PlaylistMember> findWithTrackById(String userID, PlaylistMemberID playlistMemberID){
+        return playlistMemberRepository.findWithTrackByPlaylistMemberIDAndPlaylist_User_UserID(playlistMemberID,
+                userID);
+    }
+
+    public boolean updateNote(String userID, String playlistID, String trackID, int trackNumber, String note){
+        return playlistMemberRepository.updateNote(userID, playlistID, trackID, trackNumber, note) > 0;
+    }
+
+    // false if the playlist is not stored for the user
+    public boolean upsert(String userID, String playlistID, String trackID, int trackNumber){
+        return playlistMemberRepository.upsert(userID, playlistID, trackID, trackNumber) > 0;
+    }
+
+    // in one JDBC batch, returning the members not written because the playlist is not stored for the user
+    public Set<PlaylistMemberID> upsertNotes(String userID, Map<PlaylistMemberID, String> notes){
+        return playlistMemberRepository.upsertNotes(userID, notes);
+    }
+
+    // false if the playlist is not stored for the user
+    public boolean upsertNote(String userID, String playlistID, String trackID, int trackNumber, String note){
+        return playlistMemberRepository.upsertNote(userID, playlistID, trackID, trackNumber, note) > 0;
+    }
 }
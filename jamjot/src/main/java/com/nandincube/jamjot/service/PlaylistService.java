@@ -5,6 +5,7 @@ import java.util.Set;
 
 import org.springframework.stereotype.Service;
 
+import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.model.Playlist;
 import com.nandincube.jamjot.repository.PlaylistRepository;
 
@@ -52,4 +53,31 @@ public class PlaylistService {
     public Optional<Playlist> findByPlaylistIdandUserId(String playlistID, String userID){
         return playlistRepository.findByPlaylistIDAndUser_UserID(playlistID, userID);
     }
+
+    public boolean existsByPlaylistIdandUserId(String playlistID, String userID){
+        return playlistRepository.existsByPlaylistIDAndUser_UserID(playlistID, userID);
+    }
+
+    // reads only the note, without loading the playlist entity
+    public Optional<NoteDTO> findNoteByPlaylistIdandUserId(String playlistID, String userID){
+        return playlistRepository.findNoteByPlaylistIDAndUserID(playlistID, userID);
+    }
+
+    public Playlist getReferenceById(String playlistID){
+        return playlistRepository.getReferenceById(playlistID);
+    }
+
+    public boolean updateNote(String playlistID, String userID, String note){
+        return playlistRepository.updateNote(playlistID, userID, note) > 0;
+    }
+
+    // false if the user does not exist or the playlist belongs to another user
+    public boolean upsert(String playlistID, String userID, String name){
+        return playlistRepository.upsert(playlistID, userID, name) > 0;
+    }
+
+    // false if the user does not exist or the playlist belongs to another user
+    public boolean upsertNote(String playlistID, String userID, String name, String note){
+        return playlistRepository.upsertNote(playlistID, userID, name, note) > 0;
+    }
 }
@@ -2,35 +2,62 @@ package com.nandincube.jamjot.service;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.nandincube.jamjot.dto.AddTimestampNotesResponse;
+import com.nandincube.jamjot.dto.GetPlaylistTimestampNotesResponse;
 import com.nandincube.jamjot.dto.GetTimestampNotesResponse;
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteDTO;
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteRow;
+import com.nandincube.jamjot.dto.TimestampNoteRequestDTO;
 import com.nandincube.jamjot.dto.TimestampNoteResponseDTO;
+import com.nandincube.jamjot.dto.TimestampNoteRow;
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.TimestampNotFoundException;
 import com.nandincube.jamjot.exceptions.TrackNotFoundException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
 import com.nandincube.jamjot.model.PlaylistMember;
 import com.nandincube.jamjot.model.Timestamp;
 import com.nandincube.jamjot.model.Track;
+import com.nandincube.jamjot.service.TimestampIntervalCache.TrackKey;
+import com.nandincube.jamjot.spotify.SpotifyDegradedMode;
 
 @Service
 public class TimestampAnnotationService {
 
+    private static final Comparator<TrackKey> TRACK_ORDER = Comparator.comparingInt(TrackKey::trackNumber)
+            .thenComparing(TrackKey::trackID);
+    private static final Pattern CURSOR_PATTERN = Pattern.compile("^(\\d{1,18})_(\\d{1,18})$");
+
     private final TimestampService timestampService;
     private final TrackAnnotationService trackAnnotationService;
-    private final PlaylistAnnotationService playlistAnnotationService;
+    private final TimestampIntervalCache timestampIntervalCache;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
     public TimestampAnnotationService(TimestampService timestampService,
             TrackAnnotationService trackAnnotationService,
-            PlaylistAnnotationService playlistAnnotationService) {
+            TimestampIntervalCache timestampIntervalCache,
+            @Value("${jamjot.timestamps.page-size:100}") int defaultPageSize,
+            @Value("${jamjot.timestamps.max-page-size:500}") int maxPageSize,
+            @Value("${jamjot.timestamps.max-batch-size:500}") int maxBatchSize) {
         this.timestampService = timestampService;
         this.trackAnnotationService = trackAnnotationService;
-        this.playlistAnnotationService = playlistAnnotationService;
+        this.timestampIntervalCache = timestampIntervalCache;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
@@ -51,23 +78,46 @@ public class TimestampAnnotationService {
             String note,
             PlaylistMember playlistMember) throws TrackNotFoundException {
 
+        return timestampService.save(newTimestamp(intervalStart, intervalEnd, note, playlistMember));
+    }
+
+    /**
+     * Create a new, unsaved timestamp note for a track in a playlist, after
+     * validating its interval against the duration of the track.
+     * 
+     * @param intervalStart  - the start time of the timestamp interval, in the
+     *                       format mm:ss
+     * @param intervalEnd    - the end time of the timestamp interval, in the format
+     *                       mm:ss
+     * @param note           - the content of the timestamp note
+     * @param playlistMember - the PlaylistMember entity representing the track in
+     *                       the playlist that the timestamp note belongs to
+     * @return the new Timestamp object
+     * @throws TrackNotFoundException - if the track associated with the
+     *                                playlistMember does not exist in the DB
+     */
+    private Timestamp newTimestamp(String intervalStart, String intervalEnd, String note,
+            PlaylistMember playlistMember) throws TrackNotFoundException {
+
         Track track = playlistMember.getTrack();
         if (track == null)
             throw new TrackNotFoundException();
 
+        if (intervalStart == null || intervalEnd == null) {
+            throw new IllegalArgumentException("Error: Start time and end time must be given");
+        }
         Duration start = convertMinsAsStringToDuration(intervalStart);
         Duration end = convertMinsAsStringToDuration(intervalEnd);
         Duration trackDuration = track.getDuration();
 
         validateInterval(start, end, trackDuration);
 
-        Timestamp timestamp = new Timestamp(start, end, note, playlistMember);
-
-        return timestampService.save(timestamp);
+        return new Timestamp(start, end, note, playlistMember);
     }
 
     /**
-     * Add a timestamp note for a track in a playlist.
+     * Add a timestamp note for a track in a playlist. The track is loaded with
+     * its details in one statement, and is saved first if it is not stored yet.
      * 
      * @param userID        - the authenticated user's ID
      * @param playlistID    - the Spotify ID of the playlist
@@ -93,19 +143,64 @@ public class TimestampAnnotationService {
             throws PlaylistNotFoundException, TrackNotFoundException,
             UserNotFoundException {
 
-        try {
-            PlaylistMember trackInPlaylist = trackAnnotationService.getPlaylistTrackFromDB(userID, playlistID, trackID,
-                    trackNumber);
-            return saveNewTimestamp(intervalStart, intervalEnd, note, trackInPlaylist);
+        PlaylistMember trackInPlaylist = trackAnnotationService.getOrSavePlaylistTrack(userID, playlistID, trackID,
+                trackNumber);
+        Timestamp timestamp = saveNewTimestamp(intervalStart, intervalEnd, note, trackInPlaylist);
+        timestampIntervalCache.invalidate(userID, playlistID);
+        return timestamp;
+    }
+
+    /**
+     * Add many timestamp notes for a track in a playlist at once. The track is
+     * looked up, and saved first if it is missing, only once for all the notes,
+     * and every interval is validated before any note is saved. The notes are then
+     * saved in one transaction, taking their IDs from blocks of the timestamp
+     * sequence, so they are inserted in JDBC batches rather than one statement
+     * per note.
+     * 
+     * @param userID      - the authenticated user's ID
+     * @param playlistID  - the Spotify ID of the playlist
+     * @param trackID     - the Spotify ID of the track
+     * @param trackNumber - position of the track in the playlist (used to
+     *                    disambiguate between multiple instances of the same
+     *                    track in a playlist)
+     * @param notes       - the content and interval of each timestamp note
+     * @return an AddTimestampNotesResponse object containing the added timestamp
+     *         notes, in the given order
+     * @throws PlaylistNotFoundException - if the playlist does not exist in the DB
+     *                                   or does not belong to the user
+     * @throws TrackNotFoundException    - if the track does not exist in the DB or
+     *                                   does not belong to the playlist
+     * @throws UserNotFoundException     - if the user does not exist in the DB
+     * @throws IllegalArgumentException  if no notes, more than the maximum number
+     *                                   of notes, or an invalid interval are given
+     */
+    public AddTimestampNotesResponse addTimestampNotes(String userID, String playlistID, String trackID,
+            Integer trackNumber, List<TimestampNoteRequestDTO> notes)
+            throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
+        if (notes == null || notes.isEmpty() || notes.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Error: Between 1 and " + maxBatchSize + " timestamps must be given");
+        }
 
-        } catch (PlaylistNotFoundException e) {
-            playlistAnnotationService.saveNewPlaylistEntity(userID, playlistID);
-        } catch (TrackNotFoundException e) {
-            trackAnnotationService.saveNewPlaylistTrackEntity(userID, playlistID, trackID, trackNumber);
+        PlaylistMember trackInPlaylist = trackAnnotationService.getOrSavePlaylistTrack(userID, playlistID, trackID,
+                trackNumber);
+
+        List<Timestamp> timestamps = new ArrayList<>(notes.size());
+        for (TimestampNoteRequestDTO note : notes) {
+            if (note == null) {
+                throw new IllegalArgumentException("Error: Timestamps must not be null");
+            }
+            timestamps.add(newTimestamp(note.getIntervalStart(), note.getIntervalEnd(), note.getNote(),
+                    trackInPlaylist));
         }
 
-        return addTimestampNote(userID, playlistID, trackID, trackNumber, note, intervalStart, intervalEnd);
+        List<Timestamp> saved = timestampService.saveAll(timestamps);
+        timestampIntervalCache.invalidate(userID, playlistID);
 
+        return new AddTimestampNotesResponse(saved.stream()
+                .map(timestamp -> new TimestampNoteResponseDTO(timestamp.getId(), timestamp.getStart(),
+                        timestamp.getEnd(), timestamp.getNote()))
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     /**
@@ -119,6 +214,7 @@ public class TimestampAnnotationService {
      *                                    does not exist in the DB or does not
      *                                    belong to the user.
      */
+    @Transactional
     public Timestamp updateTimestampNote(String userID, Long timestampID,
             String note) throws TimestampNotFoundException {
 
@@ -126,6 +222,7 @@ public class TimestampAnnotationService {
                 .orElseThrow(TimestampNotFoundException::new); // the timestamp with provided ID does not exist in the
                                                                // DB or does not belong to the user
         timestamp.setNote(note);
+        invalidateTimestampIntervals(userID, timestamp);
         return timestampService.save(timestamp);
     }
 
@@ -173,7 +270,12 @@ public class TimestampAnnotationService {
     }
 
     /**
-     * Get all timestamp notes for a track in a playlist.
+     * Get a page of the timestamp notes for a track in a playlist, ordered by start
+     * time. The page after a given cursor is read with a keyset condition on the
+     * start time and ID of the last note of the previous page, so each page costs
+     * the same however far into the notes it is. If there are none in the DB and
+     * Spotify is unavailable, an empty list is returned and the response is marked
+     * as degraded.
      * 
      * @param userID      - the authenticated user's ID
      * @param playlistID  - the Spotify ID of the playlist
@@ -181,47 +283,88 @@ public class TimestampAnnotationService {
      * @param trackNumber - position of the track in the playlist (used to
      *                    disambiguate between multiple instances of the same track
      *                    in a playlist)
+     * @param limit       - the maximum number of notes to return, or null for the
+     *                    default page size
+     * @param after       - the cursor returned with the previous page, or null for
+     *                    the first page
      * @return a GetTimestampNotesResponse object containing a list of TimestampDTOs
-     *         representing the timestamp notes for the track in the playlist
+     *         representing the timestamp notes for the track in the playlist, and
+     *         the cursor of the next page
      * @throws TrackNotFoundException - if the track does not exist in the DB or
      *                                does not belong to the playlist
+     * @throws IllegalArgumentException if the limit or cursor is invalid
      */
     public GetTimestampNotesResponse getTimestampNotes(String userID, String playlistID,
-            String trackID, Integer trackNumber) throws PlaylistNotFoundException, TrackNotFoundException
+            String trackID, Integer trackNumber, Integer limit, String after)
+            throws PlaylistNotFoundException, TrackNotFoundException
 
     {
+        int pageSize = pageSize(limit);
+
+        // one extra row is read to tell whether there is a next page
+        List<TimestampNoteRow> rows;
+        if (after == null) {
+            rows = timestampService.findNotesByPlaylistMemberID(userID, playlistID, trackID, trackNumber,
+                    pageSize + 1);
+        } else {
+            TimestampNoteRow cursor = parseCursor(after);
+            rows = timestampService.findNotesByPlaylistMemberIDAfter(userID, playlistID, trackID, trackNumber,
+                    cursor.start(), cursor.id(), pageSize + 1);
+        }
 
-        ArrayList<Timestamp> timestamps = timestampService.findByPlaylistMemberID(userID, playlistID, trackID,
-                trackNumber);
-        if (!timestamps.isEmpty()) {
-            ArrayList<TimestampNoteResponseDTO> timestampDTOs = (ArrayList<TimestampNoteResponseDTO>) timestamps
-                    .stream()
-                    .map((ts) -> createTimestampDTO(ts))
-                    .collect(Collectors.toList());
+        if (!rows.isEmpty() || after != null) {
+            List<TimestampNoteRow> page = rows.subList(0, Math.min(rows.size(), pageSize));
+            String next = rows.size() > pageSize ? createCursor(page.get(page.size() - 1)) : null;
+            return new GetTimestampNotesResponse(next, page.stream()
+                    .map(TimestampNoteRow::toResponse)
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
 
-            return new GetTimestampNotesResponse(timestampDTOs);
+        boolean existsOnSpotify;
+        try {
+            existsOnSpotify = trackAnnotationService.playlistTrackExistsOnSpotify(playlistID, userID, trackID,
+                    trackNumber);
+        } catch (SpotifyUnavailableException e) { // cannot be checked, but no timestamps are stored either way
+            SpotifyDegradedMode.markDegraded();
+            existsOnSpotify = true;
         }
 
-        if (!trackAnnotationService.playlistTrackExistsOnSpotify(playlistID, userID, trackID, trackNumber)) {
+        if (!existsOnSpotify) {
             throw new TrackNotFoundException();
         }
 
-        return new GetTimestampNotesResponse(new ArrayList<TimestampNoteResponseDTO>());
+        return new GetTimestampNotesResponse(null, new ArrayList<TimestampNoteResponseDTO>());
     }
 
     /**
-     * This method creates a TimestampDTO object from a Timestamp entity. It formats
-     * the start and end times of the timestamp as strings in the format mm:ss.
-     * 
-     * @param timestamp - the Timestamp entity to convert
-     * @return a TimestampNoteResponseDTO object representing the input Timestamp entity
+     * This method resolves the requested page size of timestamp notes.
+     *
+     * @param limit - the requested page size, or null for the default
+     * @return the page size, capped at the maximum page size
+     * @throws IllegalArgumentException if the limit is less than 1
      */
-    private TimestampNoteResponseDTO createTimestampDTO(Timestamp timestamp) {
-        return new TimestampNoteResponseDTO(
-                timestamp.getId(),
-                String.format("%02d:%02d", timestamp.getStart().toMinutes(), timestamp.getStart().toSecondsPart()),
-                String.format("%02d:%02d", timestamp.getEnd().toMinutes(), timestamp.getEnd().toSecondsPart()),
-                timestamp.getNote());
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Error: Limit must be at least 1");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    // a cursor is the start time in milliseconds and the ID of the last note of a page
+    private static String createCursor(TimestampNoteRow row) {
+        return row.start().toMillis() + "_" + row.id();
+    }
+
+    private static TimestampNoteRow parseCursor(String cursor) {
+        Matcher matcher = CURSOR_PATTERN.matcher(cursor);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Error: Invalid page cursor");
+        }
+        return new TimestampNoteRow(Long.parseLong(matcher.group(2)),
+                Duration.ofMillis(Long.parseLong(matcher.group(1))), null, null);
     }
 
     /**
@@ -233,12 +376,128 @@ public class TimestampAnnotationService {
      *                                    does not exist in the DB or does not
      *                                    belong to the user.
      */
+    @Transactional
     public void deleteTimestampNote(String userID, Long timestampID) throws TimestampNotFoundException {
 
         Timestamp timestamp = timestampService.findByTimestampIDAndUserID(timestampID, userID)
                 .orElseThrow(TimestampNotFoundException::new); // the timestamp with provided ID does not exist in the
                                                                // DB or does not belong to the user
+        invalidateTimestampIntervals(userID, timestamp);
         timestampService.delete(timestamp);
     }
 
+    // the playlist ID is part of the key of the playlist member, so reading it does not load the member
+    private void invalidateTimestampIntervals(String userID, Timestamp timestamp) {
+        timestampIntervalCache.invalidate(userID, timestamp.getPlaylistMember().getPlaylistMemberID().getPlaylistID());
+    }
+
+    /**
+     * Get the timestamp notes of a track in a playlist that overlap a playback
+     * position or range, ordered by start time. The notes are found in the cached
+     * interval tree of the track, so no DB query is made once the notes of the
+     * playlist are cached. Only notes stored in the jamjot DB are searched, so a
+     * track or playlist that is not stored has no active notes.
+     *
+     * @param userID      - the authenticated user's ID
+     * @param playlistID  - the Spotify ID of the playlist
+     * @param trackID     - the Spotify ID of the track
+     * @param trackNumber - position of the track in the playlist (used to
+     *                    disambiguate between multiple instances of the same track
+     *                    in a playlist)
+     * @param from        - the playback position, or the start of the range, in
+     *                    milliseconds
+     * @param to          - the end of the range in milliseconds, or null for a
+     *                    single position
+     * @return a GetTimestampNotesResponse object containing the timestamp notes
+     *         that overlap the position or range
+     * @throws IllegalArgumentException if the position or range is invalid
+     */
+    public GetTimestampNotesResponse getActiveTimestampNotes(String userID, String playlistID, String trackID,
+            Integer trackNumber, Long from, Long to) {
+        Duration start = Duration.ofMillis(from);
+        Duration end = rangeEnd(from, to);
+
+        TimestampIntervalTree tree = getTimestampIntervals(userID, playlistID)
+                .get(new TrackKey(trackID, trackNumber));
+        if (tree == null) {
+            return new GetTimestampNotesResponse(null, new ArrayList<TimestampNoteResponseDTO>());
+        }
+
+        return new GetTimestampNotesResponse(null, tree.overlapping(start, end).stream()
+                .map(TimestampNoteRow::toResponse)
+                .collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    /**
+     * Get the timestamp notes of every track in a playlist that overlap a playback
+     * position or range within their track, ordered by track number and start
+     * time. The notes are found in the cached interval trees of the tracks, so no
+     * DB query is made once the notes of the playlist are cached.
+     *
+     * @param userID     - the authenticated user's ID
+     * @param playlistID - the Spotify ID of the playlist
+     * @param from       - the playback position, or the start of the range, in
+     *                   milliseconds
+     * @param to         - the end of the range in milliseconds, or null for a
+     *                   single position
+     * @return a GetPlaylistTimestampNotesResponse object containing the timestamp
+     *         notes that overlap the position or range
+     * @throws IllegalArgumentException if the position or range is invalid
+     */
+    public GetPlaylistTimestampNotesResponse getActivePlaylistTimestampNotes(String userID, String playlistID,
+            Long from, Long to) {
+        Duration start = Duration.ofMillis(from);
+        Duration end = rangeEnd(from, to);
+
+        Map<TrackKey, TimestampIntervalTree> intervals = getTimestampIntervals(userID, playlistID);
+        List<TrackKey> tracks = new ArrayList<>(intervals.keySet());
+        tracks.sort(TRACK_ORDER);
+
+        ArrayList<PlaylistTimestampNoteDTO> notes = new ArrayList<>();
+        for (TrackKey track : tracks) {
+            for (TimestampNoteRow row : intervals.get(track).overlapping(start, end)) {
+                notes.add(new PlaylistTimestampNoteDTO(track.trackID(), track.trackNumber(), row.toResponse()));
+            }
+        }
+        return new GetPlaylistTimestampNotesResponse(notes);
+    }
+
+    /**
+     * This method validates a playback position or range and returns its end.
+     *
+     * @param from - the start of the range in milliseconds
+     * @param to   - the end of the range in milliseconds, or null for a single
+     *             position
+     * @return the end of the range
+     * @throws IllegalArgumentException if the start is negative or after the end
+     */
+    private Duration rangeEnd(Long from, Long to) {
+        if (from < 0) {
+            throw new IllegalArgumentException("Error: Position must be non-negative");
+        }
+        if (to != null && to < from) {
+            throw new IllegalArgumentException("Error: Range end must not be before range start");
+        }
+        return Duration.ofMillis(to == null ? from : to);
+    }
+
+    /**
+     * This method returns the interval trees of the timestamp notes of each track
+     * in a playlist, reading the notes of the whole playlist in one query when
+     * they are not cached.
+     *
+     * @param userID     - the authenticated user's ID
+     * @param playlistID - the Spotify ID of the playlist
+     * @return the interval tree of each track in the playlist with timestamp notes
+     */
+    protected Map<TrackKey, TimestampIntervalTree> getTimestampIntervals(String userID, String playlistID) {
+        return timestampIntervalCache.get(userID, playlistID, () -> timestampService
+                .findNotesByPlaylistID(userID, playlistID).stream()
+                .collect(Collectors.groupingBy(
+                        row -> new TrackKey(row.trackID(), row.trackNumber()),
+                        Collectors.collectingAndThen(
+                                Collectors.mapping(PlaylistTimestampNoteRow::toTimestampNoteRow, Collectors.toList()),
+                                TimestampIntervalTree::of))));
+    }
+
 }
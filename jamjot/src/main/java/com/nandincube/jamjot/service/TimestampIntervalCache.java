@@ -0,0 +1,135 @@
+package com.nandincube.jamjot.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per-user cache of the timestamp notes of each playlist in the jamjot DB, held
+ * as one interval tree per track in the playlist, so that the notes active at a
+ * playback position are found without a DB query. Entries are dropped when a
+ * timestamp note of the playlist is written on this node, and expire after the
+ * TTL so that writes made on other nodes are picked up. Once the cache is full,
+ * the least recently used entry is evicted.
+ */
+@Component
+public class TimestampIntervalCache {
+    private static final String METRIC_NAME = "jamjot.timestamp.interval.cache";
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private long generation; // guarded by entries, bumped by every invalidation
+
+    public TimestampIntervalCache(MeterRegistry meterRegistry,
+            @Value("${jamjot.timestamps.interval-cache.ttl:5m}") Duration ttl,
+            @Value("${jamjot.timestamps.interval-cache.max-entries:1000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > TimestampIntervalCache.this.maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter(METRIC_NAME + ".requests", "result", "hit");
+        this.misses = meterRegistry.counter(METRIC_NAME + ".requests", "result", "miss");
+        meterRegistry.gauge(METRIC_NAME + ".size", this, TimestampIntervalCache::size);
+    }
+
+    /**
+     * The position of a track in a playlist.
+     */
+    public record TrackKey(String trackID, int trackNumber) {
+    }
+
+    /**
+     * This method returns the cached interval trees of the tracks in a playlist,
+     * otherwise the trees are loaded using the given loader and cached. Trees
+     * loaded while the cache was invalidated are returned but not cached, as they
+     * may predate the write that invalidated it.
+     *
+     * @param userID     - ID of the user the playlist belongs to.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param loader     - Reads the timestamp notes of the playlist from the DB on
+     *                   a cache miss.
+     * @return Map<TrackKey, TimestampIntervalTree> - The interval tree of each
+     *         track in the playlist that has timestamp notes.
+     */
+    public Map<TrackKey, TimestampIntervalTree> get(String userID, String playlistID,
+            Supplier<Map<TrackKey, TimestampIntervalTree>> loader) {
+        Key key = new Key(userID, playlistID);
+        long loadGeneration;
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedAt() < ttlNanos) {
+                hits.increment();
+                return entry.trees();
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        long loadedAt = System.nanoTime();
+        Map<TrackKey, TimestampIntervalTree> trees = Map.copyOf(loader.get()); // loaded outside the lock
+
+        synchronized (entries) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry(loadedAt, trees));
+            }
+        }
+        return trees;
+    }
+
+    /**
+     * This method removes the cached timestamp notes of a playlist for a user. If
+     * a transaction is active, they are removed again once it completes, so they
+     * are not reloaded from data the transaction is about to change.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     */
+    public void invalidate(String userID, String playlistID) {
+        remove(new Key(userID, playlistID));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(new Key(userID, playlistID));
+                }
+            });
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remove(Key key) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(key);
+        }
+    }
+
+    private record Key(String userID, String playlistID) {
+    }
+
+    private record Entry(long loadedAt, Map<TrackKey, TimestampIntervalTree> trees) {
+    }
+}
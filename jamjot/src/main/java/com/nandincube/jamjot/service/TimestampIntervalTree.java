@@ -0,0 +1,131 @@
+package com.nandincube.jamjot.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.nandincube.jamjot.dto.TimestampNoteRow;
+
+/**
+ * Immutable interval tree over the timestamp notes of one track. The notes are
+ * kept in an array sorted by start time, which is treated as a balanced binary
+ * search tree (the middle of each range is the root of its subtree), and each
+ * node records the latest end time in its subtree. A lookup of the notes that
+ * overlap a position or range skips every subtree that ends before the range
+ * or starts after it, so it visits at most O((k + 1) log n) of the n nodes for
+ * k matching notes, rather than every note of the track.
+ */
+public final class TimestampIntervalTree {
+    private static final Comparator<TimestampNoteRow> BY_START = Comparator
+            .comparing(TimestampNoteRow::start)
+            .thenComparing(TimestampNoteRow::id);
+
+    private final TimestampNoteRow[] notes;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    private TimestampIntervalTree(List<TimestampNoteRow> notes) {
+        this.notes = notes.stream().sorted(BY_START).toArray(TimestampNoteRow[]::new);
+        this.starts = new long[this.notes.length];
+        this.ends = new long[this.notes.length];
+        this.maxEnds = new long[this.notes.length];
+        for (int i = 0; i < this.notes.length; i++) {
+            starts[i] = this.notes[i].start().toMillis();
+            ends[i] = this.notes[i].end().toMillis();
+        }
+        computeMaxEnds(0, this.notes.length);
+    }
+
+    /**
+     * This method builds the interval tree of the given timestamp notes.
+     *
+     * @param notes - The timestamp notes of a track, in any order.
+     * @return TimestampIntervalTree - The interval tree of the notes.
+     */
+    public static TimestampIntervalTree of(List<TimestampNoteRow> notes) {
+        return new TimestampIntervalTree(notes);
+    }
+
+    /**
+     * This method returns the notes that overlap the given range, including
+     * notes that start or end exactly at one of its bounds.
+     *
+     * @param from - The start of the range.
+     * @param to   - The end of the range, equal to from for a single position.
+     * @return List<TimestampNoteRow> - The overlapping notes, ordered by start
+     *         time.
+     */
+    public List<TimestampNoteRow> overlapping(Duration from, Duration to) {
+        List<TimestampNoteRow> overlapping = new ArrayList<>();
+        collect(0, notes.length, from.toMillis(), to.toMillis(), overlapping);
+        return overlapping;
+    }
+
+    /**
+     * This method returns the earliest position after the given one at which the
+     * set of notes overlapping the position changes, either because a note starts
+     * or because one of the notes overlapping the position ends. Until then, a
+     * moving position does not need to be looked up again.
+     *
+     * @param position - The current position.
+     * @return Duration - The position of the next change, or null if the notes
+     *         overlapping the position never change after it.
+     */
+    public Duration nextChangeAfter(Duration position) {
+        long millis = position.toMillis();
+        long next = Long.MAX_VALUE;
+
+        int low = 0;
+        int high = starts.length;
+        while (low < high) { // first note starting after the position
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < starts.length) {
+            next = starts[low];
+        }
+        for (TimestampNoteRow note : overlapping(position, position)) {
+            next = Math.min(next, note.end().toMillis() + 1);
+        }
+        return next == Long.MAX_VALUE ? null : Duration.ofMillis(next);
+    }
+
+    public int size() {
+        return notes.length;
+    }
+
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        maxEnds[middle] = Math.max(ends[middle],
+                Math.max(computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        return maxEnds[middle];
+    }
+
+    private void collect(int low, int high, long from, long to, List<TimestampNoteRow> overlapping) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        if (maxEnds[middle] < from) { // every note in this subtree ends before the range
+            return;
+        }
+
+        collect(low, middle, from, to, overlapping);
+        if (starts[middle] > to) { // this note and every note after it start after the range
+            return;
+        }
+        if (ends[middle] >= from) {
+            overlapping.add(notes[middle]);
+        }
+        collect(middle + 1, high, from, to, overlapping);
+    }
+}
@@ -1,11 +1,15 @@
 package com.nandincube.jamjot.service;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteRow;
+import com.nandincube.jamjot.dto.TimestampNoteRow;
 import com.nandincube.jamjot.model.Timestamp;
 import com.nandincube.jamjot.repository.TimestampRepository;
 
@@ -37,6 +41,22 @@ public class TimestampService {
     }
 
 
+    /**
+     * Save new timestamp objects in one transaction
+     * @param timestamps - the new timestamps to save
+     * @return the saved timestamps
+     */
+    public List<Timestamp> saveAll(List<Timestamp> timestamps){
+        for(Timestamp timestamp : timestamps){
+            String validationErrors = validateTimestamp(timestamp);
+            if(validationErrors != null){
+                throw new IllegalArgumentException("Timestamp contains invalid information: \n" + validationErrors);
+            }
+        }
+        return timestampRepository.saveAll(timestamps);
+    }
+
+
     /**
      * Validate a timestamp object
      * @param timestamp the timestamp to validate
@@ -71,7 +91,22 @@ public class TimestampService {
         timestampRepository.delete(timestamp);
     }
 
-    public ArrayList<Timestamp> findByPlaylistMemberID(String userID, String playlistID, String trackID, int trackNumber) {
-        return (ArrayList) timestampRepository.findByPlaylistMemberID(userID, playlistID, trackID, trackNumber);
+    // reads a page of notes ordered by start time straight into rows, without loading the timestamp entities
+    public List<TimestampNoteRow> findNotesByPlaylistMemberID(String userID, String playlistID, String trackID,
+            int trackNumber, int limit) {
+        return timestampRepository.findNotesByPlaylistMemberID(userID, playlistID, trackID, trackNumber,
+                Limit.of(limit));
+    }
+
+    // reads the page of notes that follows the note with the given start time and ID
+    public List<TimestampNoteRow> findNotesByPlaylistMemberIDAfter(String userID, String playlistID, String trackID,
+            int trackNumber, Duration afterStart, Long afterID, int limit) {
+        return timestampRepository.findNotesByPlaylistMemberIDAfter(userID, playlistID, trackID, trackNumber,
+                afterStart, afterID, Limit.of(limit));
+    }
+
+    // reads every note of a playlist straight into rows, without loading the timestamp entities
+    public List<PlaylistTimestampNoteRow> findNotesByPlaylistID(String userID, String playlistID) {
+        return timestampRepository.findNotesByPlaylistID(userID, playlistID);
     }
 }
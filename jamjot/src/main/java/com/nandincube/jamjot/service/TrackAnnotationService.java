@@ -2,18 +2,35 @@ package com.nandincube.jamjot.service;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestClient;
 
+import com.nandincube.jamjot.dto.NoteDTO;
 import com.nandincube.jamjot.dto.PlaylistTrackDTO;
+import com.nandincube.jamjot.dto.PlaylistTrackIDsResponse;
 import com.nandincube.jamjot.dto.TrackDTO;
 import com.nandincube.jamjot.dto.TrackInfo;
+import com.nandincube.jamjot.dto.TrackNoteRequestDTO;
+import com.nandincube.jamjot.dto.TrackNoteResultDTO;
+import com.nandincube.jamjot.dto.TrackNoteResultDTO.Status;
 import com.nandincube.jamjot.dto.GetTracksResponse;
 
 import com.nandincube.jamjot.exceptions.PlaylistNotFoundException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
 import com.nandincube.jamjot.exceptions.TrackNotFoundException;
 import com.nandincube.jamjot.exceptions.UserNotFoundException;
 
@@ -21,6 +38,10 @@ import com.nandincube.jamjot.model.Playlist;
 import com.nandincube.jamjot.model.PlaylistMember;
 import com.nandincube.jamjot.model.PlaylistMemberID;
 import com.nandincube.jamjot.model.Track;
+import com.nandincube.jamjot.spotify.PlaylistItemsDecoder;
+import com.nandincube.jamjot.spotify.PlaylistTracksCache;
+import com.nandincube.jamjot.spotify.SpotifyDegradedMode;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
 
 @Service
 public class TrackAnnotationService {
@@ -29,153 +50,280 @@ public class TrackAnnotationService {
     private final PlaylistService playlistService;
     private final RestClient restClient;
     private final PlaylistAnnotationService playlistAnnotationService;
+    private final PlaylistTracksCache playlistTracksCache;
+    private final SpotifyPageFetcher spotifyPageFetcher;
+    private final PlaylistItemsDecoder playlistItemsDecoder;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean nativeUpsert;
+    private final int maxTrackNotesBatchSize;
     private static final String SPOTIFY_BASE_URL = "https://api.spotify.com/v1";
+    private static final int PLAYLIST_TRACKS_PAGE_LIMIT = 100; // maximum page size allowed by Spotify
+    private static final String TRACK_DETAILS_FIELDS = "items(item(id,name,artists(name),duration_ms))";
+    private static final int NOTE_MAX_LENGTH = 400; // length of the note column of playlist_member
+    private static final int SAVE_TRACK_NOTES_ATTEMPTS = 3;
 
     public TrackAnnotationService(PlaylistService playlistService,
             PlaylistMemberService playlistMemberService,
             TrackService trackService,
             RestClient restClient,
-            PlaylistAnnotationService playlistAnnotationService) {
+            PlaylistAnnotationService playlistAnnotationService,
+            PlaylistTracksCache playlistTracksCache,
+            SpotifyPageFetcher spotifyPageFetcher,
+            PlaylistItemsDecoder playlistItemsDecoder,
+            TransactionTemplate transactionTemplate,
+            @Value("${jamjot.persistence.native-upsert:true}") boolean nativeUpsert,
+            @Value("${jamjot.track-notes.max-batch-size:500}") int maxTrackNotesBatchSize) {
         this.playlistService = playlistService;
         this.playlistMemberService = playlistMemberService;
         this.trackService = trackService;
         this.restClient = restClient;
         this.playlistAnnotationService = playlistAnnotationService;
+        this.playlistTracksCache = playlistTracksCache;
+        this.spotifyPageFetcher = spotifyPageFetcher;
+        this.playlistItemsDecoder = playlistItemsDecoder;
+        this.transactionTemplate = transactionTemplate;
+        this.nativeUpsert = nativeUpsert;
+        this.maxTrackNotesBatchSize = maxTrackNotesBatchSize;
     }
 
     /**
-     * This method retrieves track details from Spotify API given a track ID.
+     * This method retrieves all tracks from a Spotify playlist given the playlist
+     * ID. The tracks are cached per user and are only retrieved again from Spotify
+     * when the snapshot ID of the playlist has changed. While Spotify is
+     * unavailable, the last cached tracks are returned and the response is marked
+     * as degraded.
+     * 
+     * @param userID     - ID of the authenticated user.
+     * @param playlistID - The Spotify ID of the playlist.
+     * @return ArrayList<TrackDTO> - A list of track details.
+     */
+    public ArrayList<TrackDTO> getPlaylistTracksInfoFromSpotify(String userID, String playlistID) {
+        try {
+            return getCurrentPlaylistTracksFromSpotify(userID, playlistID);
+        } catch (SpotifyUnavailableException e) {
+            ArrayList<TrackDTO> lastKnownTracks = playlistTracksCache.getLastKnown(userID, playlistID);
+            if (lastKnownTracks == null) {
+                throw e;
+            }
+            SpotifyDegradedMode.markDegraded();
+            return lastKnownTracks;
+        }
+    }
+
+    /**
+     * This method retrieves the current tracks of a Spotify playlist. The cached
+     * tracks are returned if the snapshot ID of the playlist is unchanged, and
+     * there is no fallback to stale tracks while Spotify is unavailable.
      * 
-     * @param trackID - The Spotify ID of the track.
-     * @return TrackInfo - The details of the track.
+     * @param userID     - ID of the authenticated user.
+     * @param playlistID - The Spotify ID of the playlist.
+     * @return ArrayList<TrackDTO> - A list of track details.
      */
-    private TrackInfo getTrackInfoFromSpotify(String trackID) {
-        String trackURL = SPOTIFY_BASE_URL + "/tracks/" + trackID;
+    private ArrayList<TrackDTO> getCurrentPlaylistTracksFromSpotify(String userID, String playlistID) {
+        String snapshotID = playlistAnnotationService.getPlaylistSnapshotFromSpotify(playlistID);
+        return playlistTracksCache.get(userID, playlistID, snapshotID,
+                () -> fetchPlaylistTracksFromSpotify(playlistID));
+    }
+
+    /**
+     * This method pages through all tracks of a Spotify playlist given the playlist
+     * ID.
+     * 
+     * @param playlistID - The Spotify ID of the playlist.
+     * @return ArrayList<TrackDTO> - A list of track details.
+     */
+    private ArrayList<TrackDTO> fetchPlaylistTracksFromSpotify(String playlistID) {
+        String url = SPOTIFY_BASE_URL + "/playlists/" + playlistID + "/items";
+        ArrayList<PlaylistTrackDTO> items = spotifyPageFetcher.fetchAll(url, PLAYLIST_TRACKS_PAGE_LIMIT,
+                this::getPlaylistTracksPageFromSpotify);
+
+        ArrayList<TrackDTO> trackDTOs = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) { // pages are reassembled in order, so the index is the track number
+            TrackDTO jamjotTrackDTO = new TrackDTO(i + 1, items.get(i));
+            trackDTOs.add(jamjotTrackDTO);
+        }
 
-        TrackInfo spotifyTrackDTO = restClient.get()
-                .uri(trackURL)
+        return trackDTOs;
+    }
+
+    /**
+     * This method retrieves a single page of tracks from a Spotify playlist.
+     * 
+     * @param pageURL - The URL of the page of tracks.
+     * @return GetTracksResponse - The page of tracks.
+     */
+    private GetTracksResponse getPlaylistTracksPageFromSpotify(String pageURL) {
+        GetTracksResponse response = restClient.get()
+                .uri(pageURL)
                 .retrieve()
                 .onStatus(status -> status == HttpStatus.NOT_FOUND,
                         (req, res) -> {
-                            throw new RuntimeException(new TrackNotFoundException());
+                            throw new RuntimeException(new PlaylistNotFoundException());
+                        })
+                .onStatus(status -> status == HttpStatus.FORBIDDEN,
+                        (req, res) -> {
+                            throw new RuntimeException(new PlaylistNotFoundException());
                         })
                 .onStatus(status -> status == HttpStatus.UNAUTHORIZED,
                         (req, res) -> {
                             throw new UserNotFoundException();
                         })
-                 .onStatus(status -> status == HttpStatus.BAD_REQUEST, (req, res) -> {
-                    throw new RuntimeException(new TrackNotFoundException());
+                .onStatus(status -> status == HttpStatus.BAD_REQUEST, (req, res) -> {
+                    throw new RuntimeException(new PlaylistNotFoundException());
                 })
-                .body(TrackInfo.class);
+                .body(GetTracksResponse.class);
 
-        if (spotifyTrackDTO == null) {
-            throw new RuntimeException("Failed to retrieve track details from Spotify API");
+        if (response == null) {
+            throw new RuntimeException("Failed to retrieve tracks from Spotify API");
         }
 
-        return spotifyTrackDTO;
+        return response;
     }
 
     /**
-     * This method retrieves all tracks from a Spotify playlist given the playlist
-     * ID.
+     * This method retrieves the single playlist item at the given track number
+     * position from Spotify, using the track number as the page offset.
      * 
-     * @param playlistID - The Spotify ID of the playlist.
-     * @return ArrayList<TrackDTO> - A list of track details.
+     * @param playlistID  - The Spotify ID of the playlist.
+     * @param trackNumber - The track number of the track in the playlist.
+     * @param fields      - Spotify field filter for the response.
+     * @return PlaylistTrackDTO - The playlist item, or null if there is no item at
+     *         that position.
      */
-    public ArrayList<TrackDTO> getPlaylistTracksInfoFromSpotify(String playlistID) {
-        ArrayList<TrackDTO> trackDTOs = new ArrayList<>();
-        String next = SPOTIFY_BASE_URL + "/playlists/" + playlistID + "/items";
-
-        do {
-            GetTracksResponse response = restClient.get()
-                    .uri(next)
-                    .retrieve()
-                    .onStatus(status -> status == HttpStatus.NOT_FOUND,
-                            (req, res) -> {
-                                throw new RuntimeException(new PlaylistNotFoundException());
-                            })
-                    .onStatus(status -> status == HttpStatus.FORBIDDEN,
-                            (req, res) -> {
-                                throw new RuntimeException(new PlaylistNotFoundException());
-                            })
-                    .onStatus(status -> status == HttpStatus.UNAUTHORIZED,
-                            (req, res) -> {
-                                throw new UserNotFoundException();
-                            })
-                    .onStatus(status -> status == HttpStatus.BAD_REQUEST, (req, res) -> {
-                        throw new RuntimeException(new PlaylistNotFoundException());
-                    })
-                    .body(GetTracksResponse.class);
-
-            if (response == null) {
-                throw new RuntimeException("Failed to retrieve tracks from Spotify API");
-            }
-
-            for (int i = 0; i < response.items().size(); i++) {
-                PlaylistTrackDTO apiTrackDTO = response.items().get(i);
-                TrackDTO jamjotTrackDTO = new TrackDTO(i + 1, apiTrackDTO);
-                trackDTOs.add(jamjotTrackDTO);
-            }
-
-            next = response.next();
+    private PlaylistTrackDTO getPlaylistTrackAtPositionFromSpotify(String playlistID, Integer trackNumber,
+            String fields) {
+        if (trackNumber == null || trackNumber < 1) {
+            return null;
+        }
 
-        } while (next != null);
+        String url = SPOTIFY_BASE_URL + "/playlists/" + playlistID + "/items?offset=" + (trackNumber - 1)
+                + "&limit=1&fields=" + fields;
+        GetTracksResponse response = getPlaylistTracksPageFromSpotify(url);
 
-        return trackDTOs;
+        if (response.items() == null || response.items().isEmpty()) {
+            return null;
+        }
+        return response.items().get(0);
+    }
 
+    /**
+     * This method retrieves a single page of track IDs from a Spotify playlist,
+     * decoding the response as a stream.
+     * 
+     * @param pageURL - The URL of the page, including the track ID field filter.
+     * @return PlaylistTrackIDsResponse - The page of track IDs.
+     */
+    private PlaylistTrackIDsResponse getPlaylistTrackIDsPageFromSpotify(String pageURL) {
+        return restClient.get()
+                .uri(pageURL)
+                .exchange((req, res) -> {
+                    HttpStatusCode status = res.getStatusCode();
+                    if (status == HttpStatus.NOT_FOUND || status == HttpStatus.FORBIDDEN
+                            || status == HttpStatus.BAD_REQUEST) {
+                        throw new RuntimeException(new PlaylistNotFoundException());
+                    }
+                    if (status == HttpStatus.UNAUTHORIZED) {
+                        throw new UserNotFoundException();
+                    }
+                    if (status.isError()) {
+                        throw new RuntimeException("Failed to retrieve tracks from Spotify API");
+                    }
+                    return playlistItemsDecoder.decodeTrackIDs(res.getBody());
+                });
     }
 
     /**
      * This method checks if a track exists in the user's spotify at the given track
-     * number position.
+     * number position. Only the ID of the item at that position is requested from
+     * Spotify.
      * 
      * @param playlistID  - The Spotify ID of the playlist.
      * @param userID      - The ID of the user.
      * @param trackID     - The Spotify ID of the track.
      * @param trackNumber - The track number of the track in the playlist.
-     * @return
+     * @return boolean - True if the track is at the given position in the
+     *         playlist, false otherwise.
      */
     protected boolean playlistTrackExistsOnSpotify(String playlistID, String userID, String trackID,
             Integer trackNumber) {
-        ArrayList<TrackDTO> tracks = getPlaylistTracksInfoFromSpotify(playlistID);
+        if (trackNumber == null || trackNumber < 1) {
+            return false;
+        }
+
+        String url = SPOTIFY_BASE_URL + "/playlists/" + playlistID + "/items?offset=" + (trackNumber - 1)
+                + "&limit=1&fields=" + PlaylistItemsDecoder.TRACK_ID_FIELDS;
+        PlaylistTrackIDsResponse page = getPlaylistTrackIDsPageFromSpotify(url);
 
-        Boolean exists = tracks.stream().anyMatch(
-                (t) -> t.entry().item().getId().equals(trackID) && t.track_number() == trackNumber);
-        return exists;
+        return !page.items().isEmpty() && trackID.equals(page.items().get(0));
     }
 
     /**
      * This method retrieves a track (at a given position) from a user's playlist in
-     * the database.
+     * the database, together with the details of the track, in one statement. If
+     * the track is not stored, it is saved first, along with the playlist if that
+     * is missing too, and then loaded once. With native upserts enabled, the
+     * missing rows are saved with upserts, so concurrent requests for the same new
+     * track cannot fail on a duplicate key.
      * 
      * @param userID      - ID of the authenticated user.
      * @param playlistID  - Spotify ID of the playlist.
      * @param trackID     - Spotify ID of the track.
      * @param trackNumber - The track number of the track in the playlist.
-     * @return PlaylistMember - The track entity from the database.
-     * @throws PlaylistNotFoundException if the playlist does not exist in the
-     *                                   database.
-     * @throws TrackNotFoundException    if the track (at the given position) does
-     *                                   not exist in the playlist in the database.
+     * @return PlaylistMember - The track entity from the database, with its track
+     *         loaded.
+     * @throws PlaylistNotFoundException if the playlist does not exist on Spotify
+     *                                   or belongs to another user.
+     * @throws TrackNotFoundException    if the track is not at the given position
+     *                                   in the playlist.
+     * @throws UserNotFoundException     if the user does not exist in the jamjot DB.
      */
-    protected PlaylistMember getPlaylistTrackFromDB(String userID, String playlistID, String trackID,
-            Integer trackNumber)
-            throws PlaylistNotFoundException, TrackNotFoundException {
+    protected PlaylistMember getOrSavePlaylistTrack(String userID, String playlistID, String trackID,
+            Integer trackNumber) throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
 
-        if (!playlistAnnotationService.playlistExistsInDB(userID, playlistID)) {
-            throw new PlaylistNotFoundException();
+        PlaylistMemberID playlistTrackID = new PlaylistMemberID(trackID, playlistID, trackNumber);
+        Optional<PlaylistMember> storedTrack = playlistMemberService.findWithTrackById(userID, playlistTrackID);
+        if (storedTrack.isPresent()) {
+            return storedTrack.get();
         }
 
-        PlaylistMemberID playlistTrackID = new PlaylistMemberID(trackID, playlistID, trackNumber);
-        PlaylistMember trackInPlaylist = playlistMemberService.findById(playlistTrackID)
+        saveNewPlaylistTrackEntity(userID, playlistID, trackID, trackNumber);
+        return playlistMemberService.findWithTrackById(userID, playlistTrackID)
                 .orElseThrow(TrackNotFoundException::new);
+    }
+
+    /**
+     * This method reads the note of a track in a playlist from the jamjot DB,
+     * without loading the playlist member entity. The playlist is only looked up
+     * when the track is not found, to tell which of the two is missing.
+     *
+     * @param userID      - ID of the authenticated user.
+     * @param playlistID  - Spotify ID of the playlist.
+     * @param trackID     - Spotify ID of the track.
+     * @param trackNumber - The track number of the track in the playlist.
+     * @return String - The note/annotation for the track.
+     * @throws PlaylistNotFoundException - If the playlist does not exist in the
+     *                                   jamjot DB or does not belong to the user.
+     * @throws TrackNotFoundException    - If the track does not exist in the
+     *                                   playlist in the jamjot DB.
+     */
+    private String getPlaylistTrackNoteFromDB(String userID, String playlistID, String trackID,
+            Integer trackNumber) throws PlaylistNotFoundException, TrackNotFoundException {
+
+        Optional<NoteDTO> note = playlistMemberService.findNote(userID, playlistID, trackID, trackNumber);
+        if (note.isPresent()) {
+            return note.get().getNote();
+        }
 
-        return trackInPlaylist;
+        if (!playlistAnnotationService.playlistExistsInDB(userID, playlistID)) {
+            throw new PlaylistNotFoundException();
+        }
+        throw new TrackNotFoundException();
     }
 
     /**
      * This method retrieves the note/annotation for a specific track in a user's
-     * playlist.
+     * playlist. If the track is not in the jamjot DB and Spotify is unavailable,
+     * an empty note is returned and the response is marked as degraded.
      * 
      * @param userID      - ID of the authenticated user.
      * @param playlistID  - Spotify ID of the playlist.
@@ -191,22 +339,30 @@ public class TrackAnnotationService {
     public String getTrackNote(String userID, String playlistID, String trackID, Integer trackNumber)
             throws TrackNotFoundException, PlaylistNotFoundException {
 
-        PlaylistMember trackInPlaylist;
         try {
-            trackInPlaylist = getPlaylistTrackFromDB(userID, playlistID, trackID, trackNumber);
-            return trackInPlaylist.getNote();
+            return getPlaylistTrackNoteFromDB(userID, playlistID, trackID, trackNumber);
         } catch (PlaylistNotFoundException e) {
-            if (playlistAnnotationService.playlistExistsOnSpotify(playlistID, userID)) { // playlist exists on spotify
-                                                                                         // but no info is stored in
-                                                                                         // jamjot db
+            boolean existsOnSpotify;
+            try {
+                existsOnSpotify = playlistAnnotationService.playlistExistsOnSpotify(playlistID, userID);
+            } catch (SpotifyUnavailableException unavailable) { // cannot be checked, but no note is stored either way
+                SpotifyDegradedMode.markDegraded();
+                return "";
+            }
+            if (existsOnSpotify) { // playlist exists on spotify but no info is stored in jamjot db
                 return "";
             } else {
                 throw new PlaylistNotFoundException();
             }
         } catch (TrackNotFoundException e) {
-            if (playlistTrackExistsOnSpotify(playlistID, userID, trackID, trackNumber)) { // track exists in playlist on
-                                                                                          // spotify but no info is
-                                                                                          // stored in jamjot db
+            boolean existsOnSpotify;
+            try {
+                existsOnSpotify = playlistTrackExistsOnSpotify(playlistID, userID, trackID, trackNumber);
+            } catch (SpotifyUnavailableException unavailable) { // cannot be checked, but no note is stored either way
+                SpotifyDegradedMode.markDegraded();
+                return "";
+            }
+            if (existsOnSpotify) { // track exists in playlist on spotify but no info is stored in jamjot db
                 return "";
             } else {
                 throw new TrackNotFoundException();
@@ -217,40 +373,202 @@ public class TrackAnnotationService {
 
     /**
      * This method updates the note/annotation for a specific track in a user's
-     * playlist.
+     * playlist. The note of a stored track is updated in a single statement, while
+     * any calls to Spotify needed to create a missing playlist or track are made
+     * outside of a transaction. A missing track is created with the note already
+     * set, so it is not looked up again afterwards. With native upserts enabled,
+     * missing rows are created with atomic upserts, so concurrent first edits of
+     * the same track cannot fail on a duplicate key.
      * 
      * @param userID      - ID of the authenticated user.
      * @param playlistID  - Spotify ID of the playlist.
      * @param trackID     - Spotify ID of the track.
      * @param trackNumber - The track number of the track in the playlist.
      * @param note        - The new note/annotation for the track.
-     * @return PlaylistMember - The updated track entity.
      * @throws PlaylistNotFoundException if the playlist does not exist in the
      *                                   jamjot DB
      * @throws TrackNotFoundException    if the track does not exist as a member in
      *                                   the playlist in the jamjot DB
      * @throws UserNotFoundException     if the user does not exist in the jamjot DB
      */
-    public PlaylistMember editTrackNote(String userID, String playlistID, String trackID, Integer trackNumber,
+    public void editTrackNote(String userID, String playlistID, String trackID, Integer trackNumber,
             String note) throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
 
-        try {
-            PlaylistMember trackInPlaylist = getPlaylistTrackFromDB(userID, playlistID, trackID, trackNumber);
-            trackInPlaylist.setNote(note);
-            return playlistMemberService.save(trackInPlaylist);
-        } catch (PlaylistNotFoundException e) { // Playlist does not exist in jamjot DB
+        if (playlistMemberService.updateNote(userID, playlistID, trackID, trackNumber, note)) {
+            return;
+        }
+
+        if (nativeUpsert) {
+            upsertPlaylistTrack(userID, playlistID, trackID, trackNumber, note);
+            return;
+        }
+
+        if (!playlistAnnotationService.playlistExistsInDB(userID, playlistID)) { // Playlist does not exist in jamjot DB
             playlistAnnotationService.saveNewPlaylistEntity(userID, playlistID);
-        } catch (TrackNotFoundException e) { // Track does not exist in jamjot DB
-            saveNewPlaylistTrackEntity(userID, playlistID, trackID, trackNumber);
         }
 
-        return editTrackNote(userID, playlistID, trackID, trackNumber, note);
+        // Track does not exist in jamjot DB
+        saveNewPlaylistTrackEntity(userID, playlistID, trackID, trackNumber, note);
 
     }
 
+    /**
+     * This method updates the notes of many tracks in a user's playlist at once.
+     * The playlist is saved first if it is missing, then every item is checked
+     * against a single retrieval of the playlist's tracks from Spotify, which is
+     * reused from the cache while the playlist is unchanged. The notes of the
+     * verified items are then written in one transaction. If the same track and
+     * track number is given more than once, the last note is kept.
+     * 
+     * @param userID     - ID of the authenticated user.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param items      - The tracks, with their track numbers and new notes.
+     * @return ArrayList<TrackNoteResultDTO> - The result for each item, in the
+     *         given order.
+     * @throws IllegalArgumentException  if no items, or more than the maximum
+     *                                   number of items, are given
+     * @throws PlaylistNotFoundException if the playlist does not exist on Spotify
+     *                                   or belongs to another user
+     * @throws UserNotFoundException     if the user does not exist in the jamjot DB
+     */
+    public ArrayList<TrackNoteResultDTO> editTrackNotes(String userID, String playlistID,
+            List<TrackNoteRequestDTO> items) throws PlaylistNotFoundException, UserNotFoundException {
+        if (items == null || items.isEmpty() || items.size() > maxTrackNotesBatchSize) {
+            throw new IllegalArgumentException(
+                    "Between 1 and " + maxTrackNotesBatchSize + " track notes must be given");
+        }
+
+        if (!playlistAnnotationService.playlistExistsInDB(userID, playlistID)) { // Playlist does not exist in jamjot DB
+            playlistAnnotationService.saveNewPlaylistEntity(userID, playlistID);
+        }
+
+        ArrayList<TrackDTO> tracks = getCurrentPlaylistTracksFromSpotify(userID, playlistID);
+
+        ArrayList<TrackNoteResultDTO> results = new ArrayList<>(items.size());
+        Map<PlaylistMemberID, String> notes = new LinkedHashMap<>();
+        Map<String, TrackInfo> verifiedTracks = new HashMap<>();
+        for (TrackNoteRequestDTO item : items) {
+            Status status = verifyTrackNote(item, tracks);
+            if (status == Status.UPDATED) {
+                notes.put(new PlaylistMemberID(item.getTrackID(), playlistID, item.getTrackNumber()), item.getNote());
+                verifiedTracks.put(item.getTrackID(), tracks.get(item.getTrackNumber() - 1).entry().item());
+            }
+            results.add(item == null ? new TrackNoteResultDTO(null, null, status)
+                    : new TrackNoteResultDTO(item.getTrackID(), item.getTrackNumber(), status));
+        }
+
+        if (!notes.isEmpty()) {
+            Set<PlaylistMemberID> notSaved = saveTrackNotes(userID, playlistID, notes, verifiedTracks);
+            for (int i = 0; i < results.size(); i++) {
+                TrackNoteResultDTO result = results.get(i);
+                if (result.status() == Status.UPDATED && notSaved.contains(
+                        new PlaylistMemberID(result.track_id(), playlistID, result.track_number()))) {
+                    results.set(i, new TrackNoteResultDTO(result.track_id(), result.track_number(),
+                            Status.PLAYLIST_NOT_FOUND));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * This method checks a track note item against the tracks of the playlist on
+     * Spotify.
+     * 
+     * @param item   - The track, with its track number and new note.
+     * @param tracks - The tracks of the playlist on Spotify, in playlist order.
+     * @return Status - UPDATED if the note can be saved, otherwise why not.
+     */
+    private Status verifyTrackNote(TrackNoteRequestDTO item, List<TrackDTO> tracks) {
+        if (item == null || item.getTrackID() == null || item.getTrackNumber() == null || item.getNote() == null
+                || item.getNote().length() > NOTE_MAX_LENGTH) {
+            return Status.INVALID;
+        }
+        if (item.getTrackNumber() < 1 || item.getTrackNumber() > tracks.size()) {
+            return Status.TRACK_NOT_FOUND;
+        }
+        PlaylistTrackDTO entry = tracks.get(item.getTrackNumber() - 1).entry();
+        if (entry == null || entry.item() == null || !item.getTrackID().equals(entry.item().getId())) {
+            return Status.TRACK_NOT_FOUND;
+        }
+        return Status.UPDATED;
+    }
+
+    /**
+     * This method saves verified track notes in one transaction. With native
+     * upserts enabled, the tracks and then the playlist members are upserted in
+     * one JDBC batch each, without reading them first, so tracks and members
+     * created concurrently by other requests are kept. Otherwise the stored
+     * tracks and members are read with one statement each, the notes of stored
+     * members are updated and the missing tracks and members are created, all of
+     * which are sent as JDBC batches when the transaction commits. If another
+     * request created one of the same rows in the meantime, the transaction is
+     * rolled back and run again, reading that row. The playlist must already be
+     * stored in the jamjot DB for the user. Both batches lock their rows in key
+     * order, so concurrent saves of overlapping notes cannot deadlock.
+     * 
+     * @param userID         - ID of the authenticated user.
+     * @param playlistID     - Spotify ID of the playlist.
+     * @param notes          - The new note of each playlist member.
+     * @param verifiedTracks - Details of each track, as returned by Spotify.
+     * @return Set<PlaylistMemberID> - The members whose note was not saved,
+     *         because the playlist was removed for the user in the meantime.
+     */
+    private Set<PlaylistMemberID> saveTrackNotes(String userID, String playlistID,
+            Map<PlaylistMemberID, String> notes, Map<String, TrackInfo> verifiedTracks) {
+        if (nativeUpsert) {
+            List<Track> tracks = verifiedTracks.values().stream().map(this::newTrackEntity).toList();
+            return transactionTemplate.execute(status -> {
+                trackService.upsertAll(tracks);
+                return playlistMemberService.upsertNotes(userID, notes);
+            });
+        }
+
+        for (int attempt = 1;; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> writeTrackNotes(userID, playlistID, notes, verifiedTracks));
+                return Set.of();
+            } catch (DataIntegrityViolationException e) { // a track or member was created concurrently
+                if (attempt == SAVE_TRACK_NOTES_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void writeTrackNotes(String userID, String playlistID, Map<PlaylistMemberID, String> notes,
+            Map<String, TrackInfo> verifiedTracks) {
+        Set<String> storedTrackIDs = trackService.findStoredTrackIDs(verifiedTracks.keySet());
+        Map<PlaylistMemberID, PlaylistMember> storedMembers = playlistMemberService
+                .findByPlaylistIdAndTrackIds(userID, playlistID, verifiedTracks.keySet()).stream()
+                .collect(Collectors.toMap(PlaylistMember::getPlaylistMemberID, Function.identity()));
+        Playlist playlist = playlistService.getReferenceById(playlistID);
+
+        for (Map.Entry<PlaylistMemberID, String> note : notes.entrySet()) {
+            PlaylistMember storedMember = storedMembers.get(note.getKey());
+            if (storedMember != null) { // updated when the transaction commits
+                storedMember.setNote(note.getValue());
+                continue;
+            }
+
+            String trackID = note.getKey().getTrackID();
+            Track track;
+            if (storedTrackIDs.contains(trackID)) {
+                track = trackService.getReferenceById(trackID);
+            } else { // the same track may be at several track numbers, so it is only created once
+                track = trackService.create(newTrackEntity(verifiedTracks.get(trackID)));
+                storedTrackIDs.add(trackID);
+            }
+            saveTrackPlaylistRelationship(track, playlist, note.getKey().getTrackNumber(), note.getValue());
+        }
+    }
+
     /**
      * This method saves a new track entity in the jamjot DB and associates it with
-     * the given playlist and position in the playlist.
+     * the given playlist and position in the playlist, with an empty note. The
+     * playlist is saved too if it is missing. With native upserts enabled, rows
+     * saved concurrently by another request are kept.
      * 
      * @param userID      - ID of the authenticated user.
      * @param playlistID  - Spotify ID of the playlist.
@@ -265,50 +583,152 @@ public class TrackAnnotationService {
      */
     protected void saveNewPlaylistTrackEntity(String userID, String playlistID, String trackID,
             Integer trackNumber) throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
-
-        if (playlistTrackExistsOnSpotify(playlistID, userID, trackID, trackNumber)) {
-            Track track = saveNewTrackEntity(trackID);
-            Playlist playlist = playlistAnnotationService.getPlaylistFromDB(userID, playlistID);
-            saveTrackPlaylistRelationship(track, playlist, trackNumber);
+        if (nativeUpsert) {
+            upsertPlaylistTrack(userID, playlistID, trackID, trackNumber, null);
         } else {
+            if (!playlistAnnotationService.playlistExistsInDB(userID, playlistID)) { // Playlist does not exist in jamjot DB
+                playlistAnnotationService.saveNewPlaylistEntity(userID, playlistID);
+            }
+            saveNewPlaylistTrackEntity(userID, playlistID, trackID, trackNumber, "");
+        }
+    }
+
+    /**
+     * This method saves a track and its membership of a playlist at the given
+     * position with native upserts, without reading either first. The track is
+     * checked on Spotify, then the track and the playlist member are upserted in
+     * one short transaction, which writes no member if the playlist is not stored
+     * for the user. In that case the transaction is rolled back, so no track is
+     * kept either, and both are upserted again once the playlist is saved.
+     * 
+     * @param userID      - ID of the authenticated user.
+     * @param playlistID  - Spotify ID of the playlist.
+     * @param trackID     - Spotify ID of the track.
+     * @param trackNumber - The track number of the track in the playlist.
+     * @param note        - The note/annotation for the track, or null to keep the
+     *                    note of a member saved concurrently.
+     * @throws PlaylistNotFoundException - If the playlist does not exist on Spotify
+     *                                   or belongs to another user.
+     * @throws TrackNotFoundException    - If the track is not at the given position
+     *                                   in the playlist on Spotify.
+     * @throws UserNotFoundException     - If the user does not exist in the jamjot
+     *                                   DB.
+     */
+    private void upsertPlaylistTrack(String userID, String playlistID, String trackID, Integer trackNumber,
+            String note) throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
+
+        PlaylistTrackDTO entry = getPlaylistTrackAtPositionFromSpotify(playlistID, trackNumber,
+                TRACK_DETAILS_FIELDS);
+        if (entry == null || entry.item() == null || !trackID.equals(entry.item().getId())) {
             throw new TrackNotFoundException();
         }
+        Track track = newTrackEntity(entry.item());
+
+        if (!upsertTrackAndPlaylistMember(userID, playlistID, track, trackNumber, note)) { // Playlist does not exist in jamjot DB
+            playlistAnnotationService.saveNewPlaylistEntity(userID, playlistID);
+            if (!upsertTrackAndPlaylistMember(userID, playlistID, track, trackNumber, note)) {
+                throw new PlaylistNotFoundException();
+            }
+        }
+    }
+
+    // rolled back, keeping no track, if the playlist is not stored for the user
+    private boolean upsertTrackAndPlaylistMember(String userID, String playlistID, Track track, int trackNumber,
+            String note) {
+        return transactionTemplate.execute(status -> {
+            trackService.upsert(track);
+            if (!upsertPlaylistMember(userID, playlistID, track.getTrackID(), trackNumber, note)) {
+                status.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private boolean upsertPlaylistMember(String userID, String playlistID, String trackID, int trackNumber,
+            String note) {
+        return note == null ? playlistMemberService.upsert(userID, playlistID, trackID, trackNumber)
+                : playlistMemberService.upsertNote(userID, playlistID, trackID, trackNumber, note);
+    }
+
+    /**
+     * This method saves a new track entity in the jamjot DB and associates it with
+     * the given playlist and position in the playlist. The track is first checked
+     * on Spotify, and only then are the track and its membership of the playlist
+     * saved in one unit of work, which is flushed once when its transaction
+     * commits. The playlist must already be stored in the jamjot DB for the user.
+     * 
+     * @param userID      - ID of the authenticated user.
+     * @param playlistID  - Spotify ID of the playlist.
+     * @param trackID     - Spotify ID of the track.
+     * @param trackNumber - The track number of the track in the playlist.
+     * @param note        - The note/annotation for the track.
+     * @throws TrackNotFoundException - If the track does not exist on Spotify or
+     *                                in the jamjot DB.
+     * @throws UserNotFoundException  - If the user does not exist in the jamjot
+     *                                DB.
+     */
+    private void saveNewPlaylistTrackEntity(String userID, String playlistID, String trackID,
+            Integer trackNumber, String note) throws TrackNotFoundException, UserNotFoundException {
+        Optional<Track> existingTrack = trackService.findById(trackID);
+        TrackInfo newTrackInfo = null;
+
+        if (existingTrack.isPresent()) {
+            if (!playlistTrackExistsOnSpotify(playlistID, userID, trackID, trackNumber)) {
+                throw new TrackNotFoundException();
+            }
+        } else {
+            PlaylistTrackDTO entry = getPlaylistTrackAtPositionFromSpotify(playlistID, trackNumber,
+                    TRACK_DETAILS_FIELDS);
+            if (entry == null || entry.item() == null || !trackID.equals(entry.item().getId())) {
+                throw new TrackNotFoundException();
+            }
+            newTrackInfo = entry.item();
+        }
+
+        TrackInfo trackInfo = newTrackInfo;
+        transactionTemplate.executeWithoutResult(status -> {
+            Track track = trackInfo == null ? trackService.getReferenceById(trackID)
+                    : trackService.create(newTrackEntity(trackInfo));
+            saveTrackPlaylistRelationship(track, playlistService.getReferenceById(playlistID), trackNumber, note);
+        });
     }
 
     /**
-     * This method creates and saves a new track entity in the jamjot DB. This track
-     * can be associated with one or more playlists.
+     * This method creates a new track entity from the track details returned by
+     * Spotify. This track can be associated with one or more playlists.
      * 
-     * @param trackID - Spotify ID of the track.
-     * @return Track - The newly created track entity.
+     * @param trackDTO - Details of the track, as returned in the playlist item
+     *                 from Spotify.
+     * @return Track - The new, unsaved track entity.
      */
-    private Track saveNewTrackEntity(String trackID) {
-        TrackInfo trackDTO = getTrackInfoFromSpotify(trackID);
+    private Track newTrackEntity(TrackInfo trackDTO) {
         String trackName = trackDTO.getName();
         String artists = trackDTO.getArtists().stream()
                 .map(artist -> artist.name())
                 .collect(Collectors.joining(", "));
 
-        Track newTrack = new Track(trackID, trackName, artists, Duration.ofMillis(trackDTO.getDuration_ms()));
-        return trackService.save(newTrack);
+        return new Track(trackDTO.getId(), trackName, artists, Duration.ofMillis(trackDTO.getDuration_ms()));
     }
 
     /**
      * This method creates and saves the relationship between a track and a playlist
-     * at a specific position.
+     * at a specific position. Only the new relationship is persisted: the track and
+     * playlist may be unloaded references, and their collections of playlist
+     * members are not loaded or merged.
      * 
      * @param track       - The track entity.
      * @param playlist    - The playlist entity.
      * @param trackNumber - The position of the track in the playlist (track
      *                    number).
+     * @param note        - The note/annotation for the track.
+     * @return PlaylistMember - The newly created track entity.
      */
-    private void saveTrackPlaylistRelationship(Track track, Playlist playlist, Integer trackNumber) {
+    private PlaylistMember saveTrackPlaylistRelationship(Track track, Playlist playlist, Integer trackNumber,
+            String note) {
         PlaylistMember trackInPlaylist = new PlaylistMember(track, playlist, trackNumber);
-        playlistMemberService.save(trackInPlaylist);
-        track.addToPlaylist(trackInPlaylist);
-        playlist.addTrack(trackInPlaylist);
-        playlistService.save(playlist);
-        trackService.save(track);
+        trackInPlaylist.setNote(note);
+        return playlistMemberService.create(trackInPlaylist);
     }
 
     /**
@@ -319,8 +739,6 @@ public class TrackAnnotationService {
      * @param playlistID  - Spotify ID of the playlist.
      * @param trackID     - Spotify ID of the track.
      * @param trackNumber - The track number of the track in the playlist.
-     * @return PlaylistMember - The updated playlist track entity with the note
-     *         deleted.
      * @throws PlaylistNotFoundException - If the playlist does not exist on Spotify
      *                                   or in the jamjot DB.
      * @throws TrackNotFoundException    - If the track does not exist on Spotify or
@@ -328,9 +746,9 @@ public class TrackAnnotationService {
      * @throws UserNotFoundException     - If the user does not exist in the jamjot
      *                                   DB.
      */
-    public PlaylistMember deleteTrackNote(String userID, String playlistID, String trackID, Integer trackNumber)
+    public void deleteTrackNote(String userID, String playlistID, String trackID, Integer trackNumber)
             throws PlaylistNotFoundException, TrackNotFoundException, UserNotFoundException {
-        return editTrackNote(userID, playlistID, trackID, trackNumber, "");
+        editTrackNote(userID, playlistID, trackID, trackNumber, "");
     }
 
 }
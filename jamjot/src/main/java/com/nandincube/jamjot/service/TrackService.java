@@ -1,5 +1,8 @@
 package com.nandincube.jamjot.service;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -8,6 +11,7 @@ import org.springframework.stereotype.Service;
 import com.nandincube.jamjot.model.Track;
 import com.nandincube.jamjot.repository.TrackRepository;
 
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 
@@ -15,10 +19,12 @@ import jakarta.validation.Validator;
 public class TrackService {
     private final TrackRepository trackRepository;
     private final Validator validator;
+    private final EntityManager entityManager;
 
-    public TrackService(TrackRepository trackRepository, Validator validator) {
+    public TrackService(TrackRepository trackRepository, Validator validator, EntityManager entityManager) {
         this.trackRepository = trackRepository;
         this.validator = validator;
+        this.entityManager = entityManager;
     }
 
 
@@ -35,6 +41,35 @@ public class TrackService {
         return trackRepository.save(track);
     }
 
+    /**
+     * Save a new track object, without first reading it to check whether it is
+     * already stored. Must be called within a transaction.
+     * @param track - the new track to save
+     * @return the saved track
+     */
+    public Track create(Track track){
+        String validationErrors = validateTrack(track);
+        if(validationErrors != null){
+            throw new IllegalArgumentException("Track contains invalid information: \n" + validationErrors);
+        }
+        entityManager.persist(track);
+        return track;
+    }
+
+
+    /**
+     * Insert a track object, or update the stored track with the same ID, in one
+     * statement. PostgreSQL only.
+     * @param track - the track to save
+     */
+    public void upsert(Track track){
+        String validationErrors = validateTrack(track);
+        if(validationErrors != null){
+            throw new IllegalArgumentException("Track contains invalid information: \n" + validationErrors);
+        }
+        trackRepository.upsert(track.getTrackID(), track.getName(), track.getArtists(), track.getDuration().toNanos());
+    }
+
 
     /**
      * Validate a track object
@@ -58,8 +93,42 @@ public class TrackService {
         return errors.toString();
     }
 
+    /**
+     * Insert track objects, or update the stored tracks with the same IDs, in one
+     * JDBC batch. PostgreSQL only.
+     * @param tracks - the tracks to save
+     */
+    public void upsertAll(List<Track> tracks){
+        for(Track track : tracks){
+            String validationErrors = validateTrack(track);
+            if(validationErrors != null){
+                throw new IllegalArgumentException("Track contains invalid information: \n" + validationErrors);
+            }
+        }
+        trackRepository.upsertAll(tracks);
+    }
+
+
+    /**
+     * Find which of the given tracks are stored, without loading them
+     * @param trackIDs - the Spotify IDs of the tracks
+     * @return the IDs of the stored tracks
+     */
+    public Set<String> findStoredTrackIDs(Collection<String> trackIDs) {
+        return new HashSet<>(trackRepository.findTrackIDsByTrackIDIn(trackIDs));
+    }
+
     public Optional<Track> findById(String trackID)  {
         return trackRepository.findById(trackID);
     }
+
+    /**
+     * Get a reference to a stored track without loading it
+     * @param trackID - the Spotify ID of the track
+     * @return a reference to the track
+     */
+    public Track getReferenceById(String trackID) {
+        return trackRepository.getReferenceById(trackID);
+    }
     
 }
@@ -0,0 +1,110 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.dto.PlaylistTrackIDsResponse;
+
+/**
+ * Streaming decoder for pages of Spotify playlist items. Rather than binding
+ * the whole page to DTOs, the response is read token by token and only the
+ * paging fields and the ID of each track are kept, so a page is decoded using
+ * a constant amount of memory regardless of how much detail Spotify returns.
+ * This holds as long as the response is read as it arrives: the
+ * {@link SpotifyRequestCoalescer} only reads a page into memory when another
+ * caller shares the same request.
+ */
+@Component
+public class PlaylistItemsDecoder {
+    /**
+     * Spotify field filter that limits a page of playlist items to what this
+     * decoder reads.
+     */
+    public static final String TRACK_ID_FIELDS = "next,total,items(item(id))";
+
+    private final JsonFactory jsonFactory;
+
+    public PlaylistItemsDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * This method decodes a page of playlist items into the IDs of its tracks.
+     *
+     * @param body - The JSON response body of the page.
+     * @return PlaylistTrackIDsResponse - The paging fields and track IDs.
+     * @throws IOException if the body is not a valid page of playlist items.
+     */
+    public PlaylistTrackIDsResponse decodeTrackIDs(InputStream body) throws IOException {
+        String next = null;
+        Integer total = null;
+        ArrayList<String> trackIDs = new ArrayList<>();
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected response for playlist items from Spotify API");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                switch (field) {
+                    case "next" -> next = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                    case "total" -> total = value == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+                    case "items" -> readTrackIDs(parser, trackIDs);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        return new PlaylistTrackIDsResponse(next, total, trackIDs);
+    }
+
+    private static void readTrackIDs(JsonParser parser, ArrayList<String> trackIDs) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String trackID = null;
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+
+                    if (field.equals("item") && value == JsonToken.START_OBJECT) {
+                        trackID = readID(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            trackIDs.add(trackID);
+        }
+    }
+
+    private static String readID(JsonParser parser) throws IOException {
+        String id = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (field.equals("id") && value == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,153 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cache of playlist ownership checks made against Spotify, keyed by user and
+ * playlist ID. Definite answers (the playlist belongs to the user, or to
+ * someone else) are kept for the ownership TTL, while playlists Spotify
+ * reported as not found or forbidden are kept for a much shorter TTL.
+ *
+ * This cache is also registered as a RestClient interceptor, so that entries
+ * are dropped as soon as Spotify responds with 403 Forbidden for a playlist or
+ * 401 Unauthorized for a user.
+ */
+@Component
+public class PlaylistOwnershipCache implements ClientHttpRequestInterceptor {
+    private static final Pattern PLAYLIST_PATH = Pattern.compile("/playlists/([^/?]+)");
+
+    /**
+     * Result of checking a playlist on Spotify.
+     */
+    public enum Ownership {
+        OWNED,
+        NOT_OWNED,
+        NOT_FOUND
+    }
+
+    private final long ownershipTTLNanos;
+    private final long notFoundTTLNanos;
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PlaylistOwnershipCache(MeterRegistry meterRegistry,
+            @Value("${jamjot.spotify.playlist-ownership-cache.ttl:10m}") Duration ownershipTTL,
+            @Value("${jamjot.spotify.playlist-ownership-cache.not-found-ttl:30s}") Duration notFoundTTL,
+            @Value("${jamjot.spotify.playlist-ownership-cache.max-entries:10000}") int maxEntries) {
+        this.ownershipTTLNanos = ownershipTTL.toNanos();
+        this.notFoundTTLNanos = notFoundTTL.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > PlaylistOwnershipCache.this.maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter("jamjot.spotify.playlist.ownership.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("jamjot.spotify.playlist.ownership.cache.requests", "result", "miss");
+    }
+
+    /**
+     * This method returns the cached ownership of a playlist for a user.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     * @return Ownership - The cached result, or null if there is no unexpired
+     *         entry.
+     */
+    public Ownership get(String userID, String playlistID) {
+        synchronized (entries) {
+            Key key = new Key(userID, playlistID);
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt() < 0) {
+                hits.increment();
+                return entry.ownership();
+            }
+            entries.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * This method caches the result of checking a playlist on Spotify.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param ownership  - The result of the check.
+     */
+    public void put(String userID, String playlistID, Ownership ownership) {
+        long ttl = ownership == Ownership.NOT_FOUND ? notFoundTTLNanos : ownershipTTLNanos;
+        synchronized (entries) {
+            entries.put(new Key(userID, playlistID), new Entry(ownership, System.nanoTime() + ttl));
+        }
+    }
+
+    /**
+     * This method removes the cached ownership of a playlist for a user.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     */
+    public void invalidate(String userID, String playlistID) {
+        synchronized (entries) {
+            entries.remove(new Key(userID, playlistID));
+        }
+    }
+
+    /**
+     * This method removes all cached ownership checks for a user.
+     *
+     * @param userID - ID of the user.
+     */
+    public void invalidateUser(String userID) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.userID().equals(userID));
+        }
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        ClientHttpResponse response = execution.execute(request, body);
+        HttpStatusCode status = response.getStatusCode();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication != null && status == HttpStatus.UNAUTHORIZED) {
+            invalidateUser(authentication.getName());
+        } else if (authentication != null && status == HttpStatus.FORBIDDEN) {
+            Matcher matcher = PLAYLIST_PATH.matcher(request.getURI().getPath());
+            if (matcher.find()) {
+                invalidate(authentication.getName(), matcher.group(1));
+            }
+        }
+        return response;
+    }
+
+    private record Key(String userID, String playlistID) {
+    }
+
+    private record Entry(Ownership ownership, long expiresAt) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.nandincube.jamjot.spotify;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nandincube.jamjot.dto.TrackDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Per-user cache of the tracks contained in Spotify playlists. Each entry is
+ * keyed by the user and playlist ID and is tagged with the snapshot ID of the
+ * playlist at the time it was retrieved, so the cached tracks are only reused
+ * while the playlist is unchanged on Spotify. Once the cache is full, the least
+ * recently used entry is evicted.
+ */
+@Component
+public class PlaylistTracksCache {
+    private static final String METRIC_NAME = "jamjot.spotify.playlist.tracks.cache";
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PlaylistTracksCache(MeterRegistry meterRegistry,
+            @Value("${jamjot.spotify.playlist-tracks-cache.max-entries:100}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                boolean full = size() > PlaylistTracksCache.this.maxEntries;
+                if (full) {
+                    evictions.increment();
+                }
+                return full;
+            }
+        };
+        this.hits = meterRegistry.counter(METRIC_NAME + ".requests", "result", "hit");
+        this.misses = meterRegistry.counter(METRIC_NAME + ".requests", "result", "miss");
+        this.evictions = meterRegistry.counter(METRIC_NAME + ".evictions");
+        meterRegistry.gauge(METRIC_NAME + ".size", this, PlaylistTracksCache::size);
+    }
+
+    /**
+     * This method returns the cached tracks of a playlist if they were retrieved
+     * at the given snapshot, otherwise the tracks are loaded using the given
+     * loader and cached against the snapshot.
+     *
+     * @param userID     - ID of the user the tracks were retrieved for.
+     * @param playlistID - Spotify ID of the playlist.
+     * @param snapshotID - Current snapshot ID of the playlist on Spotify.
+     * @param loader     - Retrieves the tracks from Spotify on a cache miss.
+     * @return ArrayList<TrackDTO> - A copy of the tracks in the playlist.
+     */
+    public ArrayList<TrackDTO> get(String userID, String playlistID, String snapshotID,
+            Supplier<ArrayList<TrackDTO>> loader) {
+        Key key = new Key(userID, playlistID);
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && snapshotID != null && entry.snapshotID().equals(snapshotID)) {
+                hits.increment();
+                return new ArrayList<>(entry.tracks());
+            }
+        }
+
+        misses.increment();
+        ArrayList<TrackDTO> tracks = loader.get(); // loaded outside the lock so slow requests do not block other users
+
+        if (snapshotID != null) {
+            synchronized (entries) {
+                entries.put(key, new Entry(snapshotID, List.copyOf(tracks)));
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * This method returns the last cached tracks of a playlist regardless of the
+     * snapshot they were retrieved at. Used to serve possibly stale data while
+     * Spotify is unavailable.
+     *
+     * @param userID     - ID of the user the tracks were retrieved for.
+     * @param playlistID - Spotify ID of the playlist.
+     * @return ArrayList<TrackDTO> - A copy of the cached tracks, or null if the
+     *         playlist is not cached.
+     */
+    public ArrayList<TrackDTO> getLastKnown(String userID, String playlistID) {
+        synchronized (entries) {
+            Entry entry = entries.get(new Key(userID, playlistID));
+            return entry == null ? null : new ArrayList<>(entry.tracks());
+        }
+    }
+
+    /**
+     * This method removes the cached tracks of a playlist for a user.
+     *
+     * @param userID     - ID of the user.
+     * @param playlistID - Spotify ID of the playlist.
+     */
+    public void invalidate(String userID, String playlistID) {
+        synchronized (entries) {
+            entries.remove(new Key(userID, playlistID));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Key(String userID, String playlistID) {
+    }
+
+    private record Entry(String snapshotID, List<TrackDTO> tracks) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.nandincube.jamjot.spotify;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientId;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+
+/**
+ * In-memory store of the OAuth2 authorized clients (access and refresh tokens)
+ * of signed in users. Reads and writes do not block each other, while token
+ * refreshes for a user are serialised on one of a fixed number of lock stripes
+ * chosen by the user's name, so that a user's token is never refreshed by two
+ * threads at once.
+ */
+public class SpotifyAuthorizedClientService implements OAuth2AuthorizedClientService {
+    private final ConcurrentHashMap<OAuth2AuthorizedClientId, OAuth2AuthorizedClient> authorizedClients = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks;
+
+    public SpotifyAuthorizedClientService(int stripes) {
+        this.locks = new ReentrantLock[Math.max(1, stripes)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId,
+            String principalName) {
+        return (T) authorizedClients.get(new OAuth2AuthorizedClientId(clientRegistrationId, principalName));
+    }
+
+    @Override
+    public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal) {
+        authorizedClients.put(
+                new OAuth2AuthorizedClientId(authorizedClient.getClientRegistration().getRegistrationId(),
+                        principal.getName()),
+                authorizedClient);
+    }
+
+    @Override
+    public void removeAuthorizedClient(String clientRegistrationId, String principalName) {
+        authorizedClients.remove(new OAuth2AuthorizedClientId(clientRegistrationId, principalName));
+    }
+
+    /**
+     * This method returns a snapshot of all stored authorized clients.
+     *
+     * @return List<OAuth2AuthorizedClient> - The stored authorized clients.
+     */
+    public List<OAuth2AuthorizedClient> getAuthorizedClients() {
+        return List.copyOf(authorizedClients.values());
+    }
+
+    /**
+     * This method runs the given action while holding the lock stripe of the
+     * given user, so it does not overlap with any other action run for the same
+     * user.
+     *
+     * @param principalName - Name of the user.
+     * @param action        - The action to run.
+     * @return T - The result of the action.
+     */
+    public <T> T withUserLock(String principalName, Supplier<T> action) {
+        ReentrantLock lock = locks[Math.floorMod(principalName.hashCode(), locks.length)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Circuit breaker around every request sent to the Spotify API. The outcome of
+ * the most recent requests is recorded, where a request fails if it throws, if
+ * Spotify responds with a server error or 429, or if it takes longer than the
+ * slow call duration. Once the share of failed requests crosses the threshold
+ * the circuit opens and requests fail fast with SpotifyUnavailableException
+ * rather than tying up request threads. After the open duration a single trial
+ * request is let through, which closes the circuit again if it succeeds.
+ */
+@Component
+public class SpotifyCircuitBreaker implements ClientHttpRequestInterceptor {
+
+    /**
+     * State of the circuit.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final Counter rejected;
+
+    public SpotifyCircuitBreaker(MeterRegistry meterRegistry,
+            @Value("${jamjot.spotify.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${jamjot.spotify.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${jamjot.spotify.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${jamjot.spotify.circuit-breaker.slow-call-duration:3s}") Duration slowCallDuration,
+            @Value("${jamjot.spotify.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), window.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+
+        Gauge.builder("jamjot.spotify.circuit.breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half open")
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("jamjot.spotify.circuit.breaker.rejected");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        acquirePermission();
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            failed = response.getStatusCode().is5xxServerError()
+                    || response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+            return response;
+        } finally {
+            record(failed || System.nanoTime() - start > slowCallNanos);
+        }
+    }
+
+    /**
+     * This method returns the current state of the circuit.
+     *
+     * @return State - The state of the circuit.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * This method checks whether the circuit currently rejects requests, in which
+     * case Spotify should be treated as unavailable.
+     *
+     * @return boolean - True if the circuit is open, false otherwise.
+     */
+    public boolean isOpen() {
+        return getState() == State.OPEN;
+    }
+
+    private synchronized void acquirePermission() {
+        long now = System.nanoTime();
+
+        if (state == State.OPEN && now - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            rejected.increment();
+            long remainingNanos = state == State.OPEN ? openNanos - (now - openedAt) : 0;
+            throw new SpotifyUnavailableException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remainingNanos)));
+        }
+
+        if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    private synchronized void record(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                close();
+            }
+            return;
+        }
+
+        if (recorded == window.length && window[next]) {
+            failures--;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+        recorded = Math.min(recorded + 1, window.length);
+
+        if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,436 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import com.nandincube.jamjot.exceptions.SpotifyDeadlineExceededException;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * HTTP transport for requests sent to the Spotify API. Requests are sent using
+ * a single shared JDK HttpClient, which keeps connections alive between
+ * requests and multiplexes concurrent requests over one HTTP/2 connection per
+ * host (falling back to pooled HTTP/1.1 connections if a host does not support
+ * HTTP/2). Responses are requested gzip compressed and decompressed
+ * transparently. Requests are sent from a pool bounded to the given number of
+ * threads, or from virtual threads when virtual threads are enabled.
+ *
+ * Three timeouts are applied: the connect timeout for opening a connection, the
+ * read timeout for receiving the response headers, and the total timeout for
+ * the whole exchange including reading the response body. The wait for the
+ * response headers is bounded by the total timeout as well. The total timeout is
+ * shortened to what is left of the deadline of the current request, and no
+ * request is sent once that deadline has passed. The number of requests in
+ * flight and the request durations are published per host.
+ *
+ * When hedging is enabled, a GET that has not received its response headers
+ * within the 95th percentile of recent response times is sent a second time,
+ * and whichever response arrives first is used. Hedged requests are sent below
+ * the RestClient interceptors, so a hedge is only sent while the circuit breaker
+ * is closed, the hedge budget allows it and the request scheduler has rate limit
+ * budget to spare without waiting. The hedge budget grows by the maximum hedge
+ * ratio with every request, which caps hedges at that fraction of all requests.
+ */
+public class SpotifyClientHttpRequestFactory implements ClientHttpRequestFactory {
+    private static final String METRIC_NAME = "jamjot.spotify.http.client";
+
+    private final JdkClientHttpRequestFactory delegate;
+    private final Duration totalTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlightByHost = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("spotify-http-timeout").daemon().factory());
+    private final ExecutorService sendExecutor;
+    private final boolean hedgingEnabled;
+    private final long minHedgeDelayNanos;
+    private final HedgeBudget hedgeBudget;
+    private final SpotifyRequestScheduler requestScheduler;
+    private final SpotifyCircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow();
+    private final Counter hedged;
+    private final Counter hedgesSkipped;
+
+    public SpotifyClientHttpRequestFactory(MeterRegistry meterRegistry, Duration connectTimeout,
+            Duration readTimeout, Duration totalTimeout, int maxThreads, boolean hedgingEnabled,
+            Duration minHedgeDelay, double maxHedgeRatio, SpotifyRequestScheduler requestScheduler,
+            SpotifyCircuitBreaker circuitBreaker, boolean virtualThreads) {
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout);
+        if (virtualThreads) {
+            httpClientBuilder.executor(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("spotify-http-", 0).factory()));
+        }
+        HttpClient httpClient = httpClientBuilder.build();
+        this.sendExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("spotify-http-send-", 0).factory())
+                : new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        Thread.ofPlatform().name("spotify-http-send-", 0).daemon().factory());
+
+        this.delegate = new JdkClientHttpRequestFactory(httpClient);
+        this.delegate.setReadTimeout(readTimeout);
+        this.totalTimeout = totalTimeout;
+        this.meterRegistry = meterRegistry;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+        this.hedgeBudget = new HedgeBudget(maxHedgeRatio);
+        this.requestScheduler = requestScheduler;
+        this.circuitBreaker = circuitBreaker;
+        this.hedged = meterRegistry.counter(METRIC_NAME + ".requests.hedged");
+        this.hedgesSkipped = meterRegistry.counter(METRIC_NAME + ".requests.hedge.skipped");
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new SpotifyClientHttpRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private AtomicInteger inFlight(String host) {
+        return inFlightByHost.computeIfAbsent(host, h -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder(METRIC_NAME + ".requests.active", counter, AtomicInteger::get)
+                    .tag("host", h)
+                    .register(meterRegistry);
+            return counter;
+        });
+    }
+
+    private class SpotifyClientHttpRequest implements ClientHttpRequest {
+        private final ClientHttpRequest request;
+
+        SpotifyClientHttpRequest(ClientHttpRequest request) {
+            this.request = request;
+            if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            }
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            String host = String.valueOf(request.getURI().getHost());
+            AtomicInteger inFlight = inFlight(host);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            long start = System.nanoTime();
+            String outcome = "error";
+
+            long timeoutNanos = SpotifyDeadline.remainingNanos(totalTimeout.toNanos());
+
+            inFlight.incrementAndGet();
+            hedgeBudget.deposit();
+            try {
+                ClientHttpResponse response = isHedgeable()
+                        ? executeHedged(timeoutNanos)
+                        : await(sendAsync(request), start, timeoutNanos);
+                latencies.record(System.nanoTime() - start);
+                outcome = String.valueOf(response.getStatusCode().value());
+                return new SpotifyClientHttpResponse(response, start, timeoutNanos);
+            } catch (RejectedExecutionException e) { // every send thread is busy
+                throw new SpotifyUnavailableException(1);
+            } finally {
+                inFlight.decrementAndGet();
+                sample.stop(meterRegistry.timer(METRIC_NAME + ".requests", "host", host, "status", outcome));
+            }
+        }
+
+        private boolean isHedgeable() {
+            return hedgingEnabled && request.getMethod() == HttpMethod.GET && latencies.isWarm();
+        }
+
+        /**
+         * This method sends the request, and sends it a second time if no response
+         * has arrived within the hedge delay and a hedge may be sent. The first
+         * successful response is returned and the other one is closed once it
+         * arrives.
+         *
+         * @param timeoutNanos - Time allowed for the exchange.
+         * @return ClientHttpResponse - The first successful response.
+         * @throws IOException if both requests failed.
+         */
+        private ClientHttpResponse executeHedged(long timeoutNanos) throws IOException {
+            long start = System.nanoTime();
+            CompletableFuture<ClientHttpResponse> primary = sendAsync(request);
+            long hedgeDelayNanos = Math.max(minHedgeDelayNanos, latencies.p95());
+
+            if (hedgeDelayNanos < timeoutNanos) {
+                try {
+                    return primary.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    primary = hedge(primary);
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a Spotify response", e);
+                }
+            }
+            return await(primary, start, timeoutNanos);
+        }
+
+        private CompletableFuture<ClientHttpResponse> hedge(CompletableFuture<ClientHttpResponse> primary)
+                throws IOException {
+            if (circuitBreaker.getState() != SpotifyCircuitBreaker.State.CLOSED || !hedgeBudget.tryWithdraw()
+                    || !requestScheduler.tryAcquire()) {
+                hedgesSkipped.increment();
+                return primary;
+            }
+
+            CompletableFuture<ClientHttpResponse> hedge;
+            try {
+                hedge = sendAsync(copy());
+            } catch (RejectedExecutionException e) { // every send thread is busy
+                hedgesSkipped.increment();
+                return primary;
+            }
+            hedged.increment();
+            return firstSuccessful(primary, hedge);
+        }
+
+        /**
+         * This method waits for the response headers until the total timeout has
+         * passed since the request was started. A response arriving later is closed.
+         *
+         * @param response     - The response that is sent.
+         * @param start        - Time at which the request was started.
+         * @param timeoutNanos - Time allowed for the exchange.
+         * @return ClientHttpResponse - The response.
+         * @throws IOException if the request failed.
+         */
+        private static ClientHttpResponse await(CompletableFuture<ClientHttpResponse> response, long start,
+                long timeoutNanos) throws IOException {
+            try {
+                return response.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                response.thenAccept(ClientHttpResponse::close);
+                throw new SpotifyDeadlineExceededException();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a Spotify response", e);
+            }
+        }
+
+        private CompletableFuture<ClientHttpResponse> sendAsync(ClientHttpRequest request) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return request.execute();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, sendExecutor);
+        }
+
+        private ClientHttpRequest copy() throws IOException {
+            ClientHttpRequest copy = delegate.createRequest(request.getURI(), request.getMethod());
+            copy.getHeaders().putAll(request.getHeaders());
+            return copy;
+        }
+
+        private static CompletableFuture<ClientHttpResponse> firstSuccessful(
+                CompletableFuture<ClientHttpResponse> primary, CompletableFuture<ClientHttpResponse> hedge) {
+            CompletableFuture<ClientHttpResponse> first = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+
+            for (CompletableFuture<ClientHttpResponse> attempt : Arrays.asList(primary, hedge)) {
+                attempt.whenComplete((response, failure) -> {
+                    if (failure == null) {
+                        if (!first.complete(response)) {
+                            response.close(); // the other attempt already won
+                        }
+                    } else if (failures.incrementAndGet() == 2) {
+                        first.completeExceptionally(failure);
+                    }
+                });
+            }
+            return first;
+        }
+
+        private static IOException unwrap(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                return unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            return new IOException(cause);
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return request.getAttributes();
+        }
+    }
+
+    /**
+     * Number of hedges that may still be sent. Every request adds the maximum
+     * hedge ratio, and the budget is capped so that hedges cannot pile up while
+     * no request is slow.
+     */
+    private static class HedgeBudget {
+        private static final double MAX_BALANCE = 10;
+
+        private final double ratio;
+        private double balance;
+
+        HedgeBudget(double ratio) {
+            this.ratio = ratio;
+        }
+
+        synchronized void deposit() {
+            balance = Math.min(MAX_BALANCE, balance + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (balance < 1) {
+                return false;
+            }
+            balance -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * Response times of the most recent requests, used to derive the hedge delay.
+     */
+    private static class LatencyWindow {
+        private static final int SIZE = 200;
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private int next;
+        private long p95;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SIZE;
+            count = Math.min(count + 1, SIZE);
+            if (count >= MIN_SAMPLES && next % MIN_SAMPLES == 0) { // recomputed every few samples
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+
+        synchronized boolean isWarm() {
+            return p95 > 0;
+        }
+
+        synchronized long p95() {
+            return p95;
+        }
+    }
+
+    private class SpotifyClientHttpResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final ScheduledFuture<?> totalTimeoutTask;
+        private InputStream body;
+
+        SpotifyClientHttpResponse(ClientHttpResponse response, long start, long timeoutNanos) {
+            this.response = response;
+            long remainingNanos = timeoutNanos - (System.nanoTime() - start);
+            // closing the response aborts a body read that is still in progress
+            this.totalTimeoutTask = timeoutScheduler.schedule(response::close, Math.max(0, remainingNanos),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream raw = response.getBody();
+                body = "gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))
+                        ? gzipBody(raw)
+                        : raw;
+            }
+            return body;
+        }
+
+        // a gzip encoded response may have no body at all (e.g. 204 No Content), which is not a gzip stream
+        private static InputStream gzipBody(InputStream raw) throws IOException {
+            PushbackInputStream peekable = new PushbackInputStream(raw, 1);
+            int first = peekable.read();
+            if (first == -1) {
+                return peekable;
+            }
+            peekable.unread(first);
+            return new GZIPInputStream(peekable);
+        }
+
+        @Override
+        public void close() {
+            totalTimeoutTask.cancel(false);
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nandincube.jamjot.spotify;
+
+import java.time.Duration;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.nandincube.jamjot.exceptions.SpotifyDeadlineExceededException;
+
+/**
+ * Time budget for all Spotify requests made while handling one incoming
+ * request. The deadline is started when a controller is invoked and is stored
+ * as a request attribute, so it also applies to requests made by worker
+ * threads the request attributes are propagated to. Spotify requests made
+ * outside of a web request have no deadline.
+ */
+public final class SpotifyDeadline {
+    private static final String ATTRIBUTE = SpotifyDeadline.class.getName();
+
+    private SpotifyDeadline() {
+    }
+
+    /**
+     * This method starts the deadline for the current request.
+     *
+     * @param budget - Time allowed for all Spotify requests made for the current
+     *               request.
+     */
+    public static void start(Duration budget) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, System.nanoTime() + budget.toNanos(),
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * This method returns the time left before the deadline of the current
+     * request, capped at the given limit.
+     *
+     * @param limitNanos - The maximum number of nanoseconds to return.
+     * @return long - The remaining nanoseconds, or limitNanos if there is no
+     *         deadline.
+     * @throws SpotifyDeadlineExceededException if the deadline has passed.
+     */
+    public static long remainingNanos(long limitNanos) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object deadline = attributes == null ? null
+                : attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(deadline instanceof Long deadlineNanos)) {
+            return limitNanos;
+        }
+
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw new SpotifyDeadlineExceededException();
+        }
+        return Math.min(remaining, limitNanos);
+    }
+
+    /**
+     * This method checks that the deadline of the current request has not passed.
+     *
+     * @throws SpotifyDeadlineExceededException if the deadline has passed.
+     */
+    public static void check() {
+        remainingNanos(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,43 @@
+package com.nandincube.jamjot.spotify;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Marks the current request as served in degraded mode, meaning Spotify could
+ * not be reached and the response was built from the jamjot DB or from the last
+ * data cached from Spotify, without the usual checks against Spotify. Marked
+ * responses carry the DEGRADED_HEADER so clients can tell that the data may be
+ * incomplete or stale.
+ */
+public final class SpotifyDegradedMode {
+    public static final String DEGRADED_HEADER = "X-Jamjot-Degraded";
+    public static final String DEGRADED_REASON = "spotify-unavailable";
+    private static final String ATTRIBUTE = SpotifyDegradedMode.class.getName();
+
+    private SpotifyDegradedMode() {
+    }
+
+    /**
+     * This method marks the current request as served in degraded mode. It does
+     * nothing outside of a web request.
+     */
+    public static void markDegraded() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * This method checks whether the current request was served in degraded mode.
+     *
+     * @return boolean - True if the request was marked as degraded, false
+     *         otherwise.
+     */
+    public static boolean isDegraded() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && Boolean.TRUE.equals(attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+    }
+}
@@ -0,0 +1,167 @@
+package com.nandincube.jamjot.spotify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.nandincube.jamjot.dto.SpotifyPage;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+/**
+ * Retrieves every item of a paginated Spotify endpoint. In serial mode the
+ * "next" links are followed one page at a time. In parallel mode the first
+ * page is requested to read the total number of items, after which the
+ * remaining pages are requested concurrently by offset, at most parallelism
+ * at a time, on an executor shared by every fetch. Once a page fails, the
+ * pages still outstanding are cancelled and no more are requested. The items
+ * are always returned in the order Spotify lists them.
+ */
+@Component
+public class SpotifyPageFetcher {
+    private final boolean parallel;
+    private final int parallelism;
+    private final Executor pagingExecutor;
+
+    public SpotifyPageFetcher(@Value("${jamjot.spotify.paging.parallel:true}") boolean parallel,
+            @Value("${jamjot.spotify.paging.parallelism:4}") int parallelism,
+            @Qualifier("spotifyPagingExecutor") Executor pagingExecutor) {
+        this.parallel = parallel;
+        this.parallelism = Math.max(1, parallelism);
+        this.pagingExecutor = pagingExecutor;
+    }
+
+    /**
+     * This method creates the executor that parallel fetches share. Its threads
+     * are virtual when virtual threads are enabled, and both its threads and its
+     * queue are bounded, so a burst of fetches cannot grow it without limit.
+     *
+     * @param maxThreads     - Maximum number of pages requested at once.
+     * @param queueCapacity  - Maximum number of pages waiting for a thread.
+     * @param virtualThreads - Whether virtual threads are enabled.
+     * @return ExecutorService - The executor.
+     */
+    public static ExecutorService newPagingExecutor(int maxThreads, int queueCapacity, boolean virtualThreads) {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("spotify-paging-", 0).factory()
+                : Thread.ofPlatform().name("spotify-paging-", 0).daemon().factory();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * This method retrieves all items of a paginated Spotify endpoint.
+     *
+     * @param url         - URL of the first page.
+     * @param limit       - Number of items to request per page (the maximum
+     *                    allowed by the endpoint).
+     * @param pageRequest - Requests a single page given its URL.
+     * @return ArrayList<T> - All items, in the order returned by Spotify.
+     * @throws SpotifyUnavailableException if the shared executor is full.
+     */
+    public <T> ArrayList<T> fetchAll(String url, int limit, Function<String, ? extends SpotifyPage<T>> pageRequest) {
+        if (!parallel) {
+            return fetchSerially(url, pageRequest);
+        }
+
+        SpotifyPage<T> firstPage = pageRequest.apply(pageURL(url, 0, limit));
+        if (firstPage.total() == null || firstPage.next() == null) {
+            return new ArrayList<>(firstPage.items());
+        }
+
+        int remainingPages = (firstPage.total() - 1) / limit;
+        List<SpotifyPage<T>> pages = new ArrayList<>(Collections.nCopies(remainingPages, null));
+        List<Future<Integer>> requested = new ArrayList<>(remainingPages);
+        CompletionService<Integer> completed = new ExecutorCompletionService<>(pagingExecutor);
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        SpotifyRequestPriority priority = SpotifyRequestPriority.current();
+
+        try {
+            for (int page = 1; page <= remainingPages; page++) {
+                if (requested.size() >= parallelism) { // the next page is only requested once another is done
+                    completed.take().get();
+                }
+                int index = page - 1;
+                String nextURL = pageURL(url, page * limit, limit);
+                requested.add(completed.submit(() -> {
+                    // the OAuth2 interceptor resolves the user's authorized client from these thread locals
+                    SecurityContextHolder.setContext(securityContext);
+                    RequestContextHolder.setRequestAttributes(requestAttributes);
+                    try {
+                        pages.set(index, SpotifyRequestPriority.runAs(priority, () -> pageRequest.apply(nextURL)));
+                        return index;
+                    } finally {
+                        RequestContextHolder.resetRequestAttributes();
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            for (int done = Math.max(0, requested.size() - parallelism); done < requested.size(); done++) {
+                completed.take().get();
+            }
+
+            ArrayList<T> items = new ArrayList<>(firstPage.total());
+            items.addAll(firstPage.items());
+            for (SpotifyPage<T> page : pages) {
+                items.addAll(page.items());
+            }
+            return items;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrieving pages from Spotify API", e);
+        } catch (RejectedExecutionException e) { // every paging thread is busy and the queue is full
+            throw new SpotifyUnavailableException(1);
+        } finally {
+            requested.forEach(page -> page.cancel(true)); // only pages still outstanding after a failure
+        }
+    }
+
+    private <T> ArrayList<T> fetchSerially(String url, Function<String, ? extends SpotifyPage<T>> pageRequest) {
+        ArrayList<T> items = new ArrayList<>();
+        String next = url;
+
+        do {
+            SpotifyPage<T> page = pageRequest.apply(next);
+            items.addAll(page.items());
+            next = page.next();
+        } while (next != null);
+
+        return items;
+    }
+
+    private static String pageURL(String url, int offset, int limit) {
+        return UriComponentsBuilder.fromUriString(url)
+                .replaceQueryParam("offset", offset)
+                .replaceQueryParam("limit", limit)
+                .build()
+                .toUriString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesces identical GET requests to the Spotify API that are in flight at the
+ * same time. The first caller for a given user and URL sends the request, and
+ * any caller that asks for the same URL on behalf of the same user before the
+ * response arrives waits for and shares that response instead of sending its
+ * own request. The response is only read into memory when another caller is
+ * waiting for it, otherwise the first caller reads it as it arrives.
+ */
+@Component
+public class SpotifyRequestCoalescer implements ClientHttpRequestInterceptor {
+    private final ConcurrentHashMap<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SpotifyRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalesced = meterRegistry.counter("jamjot.spotify.coalesced.requests");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (request.getMethod() != HttpMethod.GET) {
+            return execution.execute(request, body);
+        }
+
+        Key key = new Key(currentUser(), request.getURI().toString());
+        InFlight leader = new InFlight();
+        InFlight current = inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return leader;
+            }
+            existing.waiters.incrementAndGet(); // joined while the entry is mapped, so before the leader leaves
+            return existing;
+        });
+
+        if (current != leader) {
+            coalesced.increment();
+            return await(current.response);
+        }
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            inFlight.remove(key, leader);
+            leader.response.completeExceptionally(e);
+            throw e;
+        }
+
+        inFlight.remove(key, leader); // no caller can join once removed
+        if (leader.waiters.get() == 0) {
+            return response;
+        }
+
+        try (response) {
+            BufferedResponse buffered = new BufferedResponse(response.getStatusCode(),
+                    HttpHeaders.readOnlyHttpHeaders(response.getHeaders()),
+                    StreamUtils.copyToByteArray(response.getBody()));
+            leader.response.complete(buffered);
+            return buffered;
+        } catch (IOException | RuntimeException e) {
+            leader.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static BufferedResponse await(CompletableFuture<BufferedResponse> response) throws IOException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an in-flight Spotify request", e);
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    private record Key(String userID, String url) {
+    }
+
+    private static class InFlight {
+        private final CompletableFuture<BufferedResponse> response = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+
+    /**
+     * A fully read response whose body can be consumed by every caller that
+     * shares it.
+     */
+    private record BufferedResponse(HttpStatusCode statusCode, HttpHeaders headers, byte[] body)
+            implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
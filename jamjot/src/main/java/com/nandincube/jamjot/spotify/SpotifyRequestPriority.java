@@ -0,0 +1,53 @@
+package com.nandincube.jamjot.spotify;
+
+import java.util.function.Supplier;
+
+/**
+ * Priority classes for requests sent to the Spotify API. Interactive requests
+ * are made on behalf of a user waiting for a response and are always given
+ * rate limit budget before background requests. Requests are interactive
+ * unless they are made inside {@link #runInBackground(Supplier)}.
+ */
+public enum SpotifyRequestPriority {
+    INTERACTIVE,
+    BACKGROUND;
+
+    private static final ThreadLocal<SpotifyRequestPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    /**
+     * This method returns the priority of requests made by the current thread.
+     *
+     * @return SpotifyRequestPriority - The current priority.
+     */
+    public static SpotifyRequestPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * This method runs the given action with the given request priority on the
+     * current thread, restoring the previous priority afterwards.
+     *
+     * @param priority - The priority for requests made by the action.
+     * @param action   - The action to run.
+     * @return T - The result of the action.
+     */
+    public static <T> T runAs(SpotifyRequestPriority priority, Supplier<T> action) {
+        SpotifyRequestPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * This method runs the given action with background request priority.
+     *
+     * @param action - The action to run.
+     * @return T - The result of the action.
+     */
+    public static <T> T runInBackground(Supplier<T> action) {
+        return runAs(BACKGROUND, action);
+    }
+}
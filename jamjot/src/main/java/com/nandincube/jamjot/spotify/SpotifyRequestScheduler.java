@@ -0,0 +1,207 @@
+package com.nandincube.jamjot.spotify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Central scheduler for every request sent to the Spotify API. Requests draw
+ * from a single token bucket sized to the app's rate limit quota, where
+ * interactive requests are always served before background requests. When
+ * Spotify responds with 429 Too Many Requests, all requests are paused for the
+ * period given in the Retry-After header and the limited request is retried.
+ *
+ * This interceptor must be the last one registered on the RestClient, as it may
+ * execute the same request more than once.
+ */
+@Component
+public class SpotifyRequestScheduler implements ClientHttpRequestInterceptor {
+    private static final String METRIC_NAME = "jamjot.spotify.scheduler";
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long maxWaitNanos;
+    private final int maxRetries;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition budgetAvailable = lock.newCondition();
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+    private final AtomicIntegerArray waiting = new AtomicIntegerArray(SpotifyRequestPriority.values().length);
+
+    private final Timer[] waitTimers = new Timer[SpotifyRequestPriority.values().length];
+    private final Counter rateLimited;
+
+    public SpotifyRequestScheduler(MeterRegistry meterRegistry,
+            @Value("${jamjot.spotify.rate-limit.requests-per-second:10}") double requestsPerSecond,
+            @Value("${jamjot.spotify.rate-limit.burst:20}") int burst,
+            @Value("${jamjot.spotify.rate-limit.max-wait:10s}") Duration maxWait,
+            @Value("${jamjot.spotify.rate-limit.max-retries:3}") int maxRetries) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxRetries = maxRetries;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+
+        for (SpotifyRequestPriority priority : SpotifyRequestPriority.values()) {
+            String tag = priority.name().toLowerCase();
+            waitTimers[priority.ordinal()] = meterRegistry.timer(METRIC_NAME + ".wait", "priority", tag);
+            Gauge.builder(METRIC_NAME + ".queue.depth", waiting, w -> w.get(priority.ordinal()))
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        this.rateLimited = meterRegistry.counter(METRIC_NAME + ".rate.limited");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        SpotifyRequestPriority priority = SpotifyRequestPriority.current();
+
+        for (int attempt = 0;; attempt++) {
+            acquire(priority);
+            ClientHttpResponse response = execution.execute(request, body);
+
+            if (response.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS) {
+                return response;
+            }
+
+            long retryAfterSeconds = retryAfterSeconds(response);
+            response.close();
+            rateLimited.increment();
+            pause(retryAfterSeconds);
+
+            if (attempt >= maxRetries) {
+                throw new SpotifyUnavailableException(retryAfterSeconds);
+            }
+        }
+    }
+
+    /**
+     * This method blocks until the rate limit budget allows a request with the
+     * given priority to be sent.
+     *
+     * @param priority - The priority of the request.
+     * @throws SpotifyUnavailableException if the budget does not become available
+     *                                     within the maximum wait time or before
+     *                                     the deadline of the current request.
+     */
+    private void acquire(SpotifyRequestPriority priority) {
+        long start = System.nanoTime();
+        long deadline = start + SpotifyDeadline.remainingNanos(maxWaitNanos);
+
+        lock.lock();
+        waiting.incrementAndGet(priority.ordinal());
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                boolean interactiveWaiting = priority != SpotifyRequestPriority.INTERACTIVE
+                        && waiting.get(SpotifyRequestPriority.INTERACTIVE.ordinal()) > 0;
+                if (now - pausedUntil >= 0 && tokens >= 1 && !interactiveWaiting) {
+                    tokens -= 1;
+                    return;
+                }
+
+                long waitNanos = Math.max(pausedUntil - now, (long) ((1 - tokens) / tokensPerNano));
+                if (now + waitNanos - deadline > 0) {
+                    throw new SpotifyUnavailableException(
+                            Math.max(1, TimeUnit.NANOSECONDS.toSeconds(pausedUntil - now)));
+                }
+                budgetAvailable.awaitNanos(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyUnavailableException(DEFAULT_RETRY_AFTER_SECONDS);
+        } finally {
+            waiting.decrementAndGet(priority.ordinal());
+            budgetAvailable.signalAll(); // lets background requests re-check once interactive ones have left
+            lock.unlock();
+            waitTimers[priority.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * This method takes one request from the rate limit budget without waiting,
+     * for optional requests such as hedged requests. The budget is only taken
+     * when no other request is waiting for it.
+     *
+     * @return boolean - True if the request may be sent, false if it should be
+     *         skipped.
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            for (SpotifyRequestPriority priority : SpotifyRequestPriority.values()) {
+                if (waiting.get(priority.ordinal()) > 0) {
+                    return false;
+                }
+            }
+            if (now - pausedUntil < 0 || tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    /**
+     * This method stops all requests from being sent for the given number of
+     * seconds, as instructed by Spotify.
+     *
+     * @param seconds - The number of seconds to pause for.
+     */
+    private void pause(long seconds) {
+        lock.lock();
+        try {
+            long resumeAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            if (resumeAt - pausedUntil > 0) {
+                pausedUntil = resumeAt;
+            }
+            tokens = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long retryAfterSeconds(ClientHttpResponse response) {
+        String retryAfter = response.getHeaders().getFirst("Retry-After");
+        try {
+            return retryAfter == null ? DEFAULT_RETRY_AFTER_SECONDS : Math.max(0, Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.nandincube.jamjot.spotify;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Renews the access tokens of signed in users in the background shortly before
+ * they expire, so requests made on behalf of a user do not have to wait for a
+ * token refresh. Each refresh holds the user's lock stripe in the authorized
+ * client store and re-checks the stored token first, so a token already renewed
+ * by another thread is not refreshed again.
+ */
+@Component
+public class SpotifyTokenRefresher {
+    private final SpotifyAuthorizedClientService authorizedClientService;
+    private final AuthorizedClientServiceOAuth2AuthorizedClientManager refreshManager;
+    private final Duration refreshAhead;
+    private final Counter refreshed;
+    private final Counter failed;
+
+    public SpotifyTokenRefresher(SpotifyAuthorizedClientService authorizedClientService,
+            ClientRegistrationRepository clientRegistrationRepository, MeterRegistry meterRegistry,
+            @Value("${jamjot.spotify.token-refresh.refresh-ahead:5m}") Duration refreshAhead) {
+        this.authorizedClientService = authorizedClientService;
+        this.refreshAhead = refreshAhead;
+        this.refreshManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrationRepository,
+                authorizedClientService);
+        this.refreshManager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+                .refreshToken(refreshToken -> refreshToken.clockSkew(refreshAhead))
+                .build());
+        this.refreshed = meterRegistry.counter("jamjot.spotify.token.refresh", "result", "success");
+        this.failed = meterRegistry.counter("jamjot.spotify.token.refresh", "result", "failure");
+    }
+
+    /**
+     * This method refreshes every stored access token that expires within the
+     * refresh ahead period.
+     */
+    @Scheduled(fixedDelayString = "${jamjot.spotify.token-refresh.interval:30s}")
+    public void refreshExpiringTokens() {
+        for (OAuth2AuthorizedClient authorizedClient : authorizedClientService.getAuthorizedClients()) {
+            if (isExpiring(authorizedClient)) {
+                refresh(authorizedClient.getClientRegistration().getRegistrationId(),
+                        authorizedClient.getPrincipalName());
+            }
+        }
+    }
+
+    private void refresh(String clientRegistrationId, String principalName) {
+        authorizedClientService.withUserLock(principalName, () -> {
+            OAuth2AuthorizedClient current = authorizedClientService.loadAuthorizedClient(clientRegistrationId,
+                    principalName);
+            if (current == null || !isExpiring(current)) { // removed or already renewed
+                return null;
+            }
+
+            try {
+                refreshManager.authorize(OAuth2AuthorizeRequest.withAuthorizedClient(current)
+                        .principal(principalName)
+                        .build());
+                refreshed.increment();
+            } catch (RuntimeException e) { // left to be refreshed on the next run, or on the request path
+                failed.increment();
+            }
+            return null;
+        });
+    }
+
+    private boolean isExpiring(OAuth2AuthorizedClient authorizedClient) {
+        OAuth2AccessToken accessToken = authorizedClient.getAccessToken();
+        return authorizedClient.getRefreshToken() != null
+                && accessToken.getExpiresAt() != null
+                && Instant.now().plus(refreshAhead).isAfter(accessToken.getExpiresAt());
+    }
+}
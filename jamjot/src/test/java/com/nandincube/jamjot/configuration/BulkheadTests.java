@@ -0,0 +1,43 @@
+package com.nandincube.jamjot.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BulkheadTests {
+
+    @Test
+    void rejectsOnceConcurrencyAndQueueAreFull() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Bulkhead bulkhead = new Bulkhead("spotify", meterRegistry, 1, 1, Duration.ofSeconds(5));
+
+        assertTrue(bulkhead.tryAcquire());
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(bulkhead::tryAcquire);
+        while (meterRegistry.get("jamjot.bulkhead.queued").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertFalse(bulkhead.tryAcquire()); // queue is full
+        bulkhead.release();
+        assertTrue(queued.get(1, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("jamjot.bulkhead.rejected").counter().count());
+    }
+
+    @Test
+    void rejectsWhenWaitTimesOut() {
+        Bulkhead bulkhead = new Bulkhead("database", new SimpleMeterRegistry(), 1, 10, Duration.ofMillis(10));
+
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+    }
+}
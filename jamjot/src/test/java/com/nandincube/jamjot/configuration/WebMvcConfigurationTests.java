@@ -0,0 +1,34 @@
+package com.nandincube.jamjot.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WebMvcConfigurationTests {
+
+    @Test
+    void spotifyBulkheadMustLeaveRequestThreadsFree() {
+        assertDoesNotThrow(() -> configuration(100, 50, 200, false));
+        assertThrows(IllegalStateException.class, () -> configuration(150, 50, 200, false));
+        assertThrows(IllegalStateException.class, () -> configuration(100, 50, 150, false));
+    }
+
+    @Test
+    void requestThreadsAreNotBoundedWithVirtualThreads() {
+        assertDoesNotThrow(() -> configuration(150, 50, 200, true));
+    }
+
+    private static WebMvcConfiguration configuration(int spotifyMaxConcurrent, int spotifyMaxQueued,
+            int maxRequestThreads, boolean virtualThreads) {
+        return new WebMvcConfiguration(Duration.ofSeconds(8), new SimpleMeterRegistry(), new ObjectMapper(),
+                spotifyMaxConcurrent, spotifyMaxQueued, Duration.ofSeconds(2), 50, 100, Duration.ofSeconds(1),
+                maxRequestThreads, virtualThreads);
+    }
+}
@@ -0,0 +1,270 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nandincube.jamjot.dto.AddTimestampNotesResponse;
+import com.nandincube.jamjot.dto.GetTimestampNotesResponse;
+import com.nandincube.jamjot.dto.TimestampNoteRequestDTO;
+import com.nandincube.jamjot.model.Playlist;
+import com.nandincube.jamjot.model.PlaylistMember;
+import com.nandincube.jamjot.model.Timestamp;
+import com.nandincube.jamjot.model.Track;
+import com.nandincube.jamjot.model.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Counts the SQL statements run by each annotation endpoint for a track with a
+ * varying number of timestamp notes, against an in-memory database. The counts
+ * must not depend on the number of notes.
+ */
+@DataJpaTest(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import({ PlaylistService.class, PlaylistMemberService.class, TrackService.class, UserService.class,
+        TimestampService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the services manage their own transactions
+class AnnotationQueryCountTests {
+    private static final String USER_ID = "user";
+    private static final String PLAYLIST_ID = "playlist";
+    private static final String TRACK_ID = "track000000000000000001";
+    private static final int TRACK_NUMBER = 3;
+    private static final int TIMESTAMP_ID_BLOCK = 50; // allocation size of the timestamp ID sequence
+
+    @Autowired
+    private PlaylistService playlistService;
+    @Autowired
+    private PlaylistMemberService playlistMemberService;
+    @Autowired
+    private TrackService trackService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TimestampService timestampService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private PlaylistAnnotationService playlistAnnotationService;
+    private TrackAnnotationService trackAnnotationService;
+    private TimestampAnnotationService timestampAnnotationService;
+    private Statistics statistics;
+    private Long timestampID;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        playlistAnnotationService = new PlaylistAnnotationService(playlistService, userService, null, null, null,
+                null, false);
+        trackAnnotationService = new TrackAnnotationService(playlistService, playlistMemberService, trackService,
+                null, playlistAnnotationService, null, null, null, transactionTemplate, false, 500);
+        timestampAnnotationService = new TimestampAnnotationService(timestampService, trackAnnotationService,
+                new TimestampIntervalCache(new SimpleMeterRegistry(), Duration.ofMinutes(5), 100), 100, 500, 500);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 25 })
+    void readsRunFixedNumberOfStatements(int timestamps) throws Exception {
+        seed(timestamps);
+
+        // the reads are projections, so no entity is loaded
+        assertEquals(1, count(() -> assertEquals(timestamps, timestampAnnotationService
+                .getTimestampNotes(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, null, null).items().size())));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, count(() -> assertEquals("Track note", trackAnnotationService
+                .getTrackNote(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER))));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, count(() -> assertEquals("Playlist note", playlistAnnotationService
+                .getPlaylistNote(USER_ID, PLAYLIST_ID))));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void timestampPagesAreOrderedByStartTime() throws Exception {
+        seed(25);
+
+        List<String> startTimes = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            GetTimestampNotesResponse[] page = new GetTimestampNotesResponse[1];
+            String cursor = after;
+            assertEquals(1, count(() -> page[0] = timestampAnnotationService.getTimestampNotes(USER_ID,
+                    PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 10, cursor)));
+            page[0].items().forEach(timestamp -> startTimes.add(timestamp.start_time()));
+            after = page[0].next();
+            pages++;
+        } while (after != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, startTimes.size());
+        assertEquals(startTimes.stream().sorted().toList(), startTimes);
+        assertEquals("00:00", startTimes.get(0));
+        assertEquals("00:24", startTimes.get(24));
+    }
+
+    @Test
+    void activeTimestampNotesAreServedFromIntervalTrees() throws Exception {
+        seed(25);
+
+        // the notes start every second and last a second, so a position on a boundary is covered by two
+        assertEquals(1, count(() -> assertEquals(2, timestampAnnotationService.getActiveTimestampNotes(USER_ID,
+                PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 10_000L, null).items().size())));
+        assertEquals(0, count(() -> assertEquals(1, timestampAnnotationService.getActiveTimestampNotes(USER_ID,
+                PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 10_500L, null).items().size())));
+        assertEquals(0, count(() -> assertEquals(6, timestampAnnotationService.getActivePlaylistTimestampNotes(
+                USER_ID, PLAYLIST_ID, 20_000L, 24_000L).items().size())));
+
+        timestampAnnotationService.addTimestampNote(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, "New note",
+                "00:10", "00:20");
+        assertEquals(1, count(() -> assertEquals(2, timestampAnnotationService.getActiveTimestampNotes(USER_ID,
+                PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 10_500L, null).items().size())));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 25 })
+    void writesRunFixedNumberOfStatements(int timestamps) throws Exception {
+        seed(timestamps);
+
+        // the track lookup, the lookup of the member by the new timestamp, then the insert, plus a block of
+        // IDs from the sequence once the last block is used up
+        assertEquals(3, countWithoutSequenceFetches(() -> timestampAnnotationService.addTimestampNote(USER_ID,
+                PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, "New note", "00:10", "00:20")));
+        assertEquals(2, count(() -> inTransaction(() -> timestampAnnotationService
+                .updateTimestampNote(USER_ID, timestampID, "Updated note"))));
+        assertEquals(2, count(() -> inTransaction(() -> timestampAnnotationService
+                .deleteTimestampNote(USER_ID, timestampID))));
+        assertEquals(1, count(() -> trackAnnotationService.editTrackNote(USER_ID, PLAYLIST_ID, TRACK_ID,
+                TRACK_NUMBER, "Updated note")));
+        assertEquals(1, count(() -> playlistAnnotationService.editPlaylistNote(USER_ID, PLAYLIST_ID,
+                "Updated note")));
+    }
+
+    @Test
+    void bulkTimestampInsertRunsHandfulOfStatements() throws Exception {
+        seed(1);
+        // warm the interval cache, so the bulk insert must invalidate it
+        timestampAnnotationService.getActiveTimestampNotes(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 0L, null);
+
+        List<TimestampNoteRequestDTO> notes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int start = i % 170;
+            notes.add(new TimestampNoteRequestDTO("Cue " + i, "%02d:%02d".formatted(start / 60, start % 60),
+                    "%02d:%02d".formatted((start + 10) / 60, (start + 10) % 60)));
+        }
+
+        AddTimestampNotesResponse[] added = new AddTimestampNotesResponse[1];
+        long sequenceValue = sequenceValue();
+        // the track lookup, the lookup of the member by the new timestamps, a block of IDs from the sequence
+        // per 50 notes, then the inserts, sent in batches of 50 through one prepared statement
+        assertEquals(7, count(() -> added[0] = timestampAnnotationService.addTimestampNotes(USER_ID, PLAYLIST_ID,
+                TRACK_ID, TRACK_NUMBER, notes)));
+        assertEquals(4, (sequenceValue() - sequenceValue) / TIMESTAMP_ID_BLOCK);
+        assertEquals(200, statistics.getEntityInsertCount());
+        assertEquals(200, added[0].items().stream().map(timestamp -> timestamp.id()).distinct().count());
+        assertEquals("Cue 0", added[0].items().get(0).note());
+
+        assertEquals(1, count(() -> assertEquals(3, timestampAnnotationService.getActiveTimestampNotes(USER_ID,
+                PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, 0L, null).items().size())));
+    }
+
+    private void seed(int timestamps) {
+        timestampID = transactionTemplate.execute(status -> {
+            entityManager.createQuery("DELETE FROM timestamp").executeUpdate();
+            entityManager.createQuery("DELETE FROM playlist_member").executeUpdate();
+            entityManager.createQuery("DELETE FROM track").executeUpdate();
+            entityManager.createQuery("DELETE FROM playlist").executeUpdate();
+            entityManager.createQuery("DELETE FROM user").executeUpdate();
+
+            User user = new User(USER_ID, "User");
+            Playlist playlist = new Playlist(PLAYLIST_ID, "Playlist", user);
+            playlist.setNote("Playlist note");
+            Track track = new Track(TRACK_ID, "Track", "Artist", Duration.ofMinutes(3));
+            PlaylistMember trackInPlaylist = new PlaylistMember(track, playlist, TRACK_NUMBER);
+            trackInPlaylist.setNote("Track note");
+            entityManager.persist(user);
+            entityManager.persist(playlist);
+            entityManager.persist(track);
+            entityManager.persist(trackInPlaylist);
+
+            Timestamp timestamp = null;
+            for (int i = 0; i < timestamps; i++) {
+                // saved in reverse order of start time
+                int start = timestamps - 1 - i;
+                timestamp = new Timestamp(Duration.ofSeconds(start), Duration.ofSeconds(start + 1), "Note " + i,
+                        trackInPlaylist);
+                entityManager.persist(timestamp);
+            }
+            return timestamp.getId();
+        });
+    }
+
+    private void inTransaction(Action action) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private long count(Action action) throws Exception {
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long countWithoutSequenceFetches(Action action) throws Exception {
+        long before = sequenceValue();
+        long statements = count(action);
+        return statements - (sequenceValue() - before) / TIMESTAMP_ID_BLOCK;
+    }
+
+    // the next value of the timestamp ID sequence, which moves on by a block each time IDs are fetched
+    private long sequenceValue() {
+        return ((Number) entityManager.createNativeQuery(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'TIMESTAMP_SEQ'")
+                .getSingleResult()).longValue();
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,231 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.nandincube.jamjot.dto.PlaybackNotesEvent;
+import com.nandincube.jamjot.dto.PlaylistTimestampNoteDTO;
+import com.nandincube.jamjot.dto.TimestampNoteRow;
+import com.nandincube.jamjot.service.TimestampIntervalCache.TrackKey;
+import com.nandincube.jamjot.spotify.SpotifyAuthorizedClientService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Drives the playback note stream with scripted playback positions, served one
+ * per poll by a stubbed Spotify API, against the cached notes of a single
+ * track.
+ */
+class PlaybackNoteStreamServiceTests {
+    private static final String USER_ID = "user";
+    private static final String CLIENT_REGISTRATION_ID = "spotify";
+    private static final String PLAYLIST_ID = "playlist";
+    private static final String TRACK_ID = "track";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<String> playback = new LinkedBlockingQueue<>();
+    private final AtomicInteger spotifyRequests = new AtomicInteger();
+    private PlaybackNoteStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        RestClient restClient = RestClient.builder()
+                .requestInterceptor((request, body, execution) -> {
+                    String json;
+                    try {
+                        json = playback.take(); // the poll waits until the test plays the next position
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                    spotifyRequests.incrementAndGet();
+                    MockClientHttpResponse response = new MockClientHttpResponse(
+                            json.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+                    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    return response;
+                })
+                .build();
+
+        SpotifyAuthorizedClientService authorizedClientService = new SpotifyAuthorizedClientService(1);
+        authorizedClientService.saveAuthorizedClient(authorizedClient(),
+                new TestingAuthenticationToken(USER_ID, null));
+
+        Map<TrackKey, TimestampIntervalTree> intervals = Map.of(new TrackKey(TRACK_ID, 1),
+                TimestampIntervalTree.of(List.of(
+                        new TimestampNoteRow(1L, Duration.ofMillis(1000), Duration.ofMillis(2000), "Intro"),
+                        new TimestampNoteRow(2L, Duration.ofMillis(3000), Duration.ofMillis(5000), "Chorus"))));
+        TimestampAnnotationService timestampAnnotationService = new TimestampAnnotationService(null, null, null,
+                100, 500, 500) {
+            @Override
+            protected Map<TrackKey, TimestampIntervalTree> getTimestampIntervals(String userID, String playlistID) {
+                return intervals; // the same cached trees on every poll
+            }
+        };
+
+        service = new PlaybackNoteStreamService(restClient, authorizedClientService, timestampAnnotationService,
+                meterRegistry, Duration.ofMillis(5), 1, Duration.ofMinutes(1)) {
+            @Override
+            protected SseEmitter createEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void eventsAreSentOnlyWhenCoveringNotesChange() throws Exception {
+        RecordingEmitter subscriber = (RecordingEmitter) service.subscribe(USER_ID, CLIENT_REGISTRATION_ID);
+
+        play(0);
+        assertEquals(List.of(List.of()), subscriber.notes());
+        play(500);
+        play(1000);
+        play(1500);
+        play(2000); // the intro still covers its end
+        assertEquals(List.of(List.of(), List.of("Intro")), subscriber.notes());
+        play(2001);
+        play(2500);
+        play(4000);
+        play(4500);
+
+        assertEquals(List.of(List.of(), List.of("Intro"), List.of(), List.of("Chorus")), subscriber.notes());
+        assertEquals(9, spotifyRequests.get());
+        assertEquals(4, meterRegistry.counter("jamjot.playback.stream.events").count());
+    }
+
+    @Test
+    void subscribersOfOneUserSharePollerWhichStopsWithLastSubscriber() throws Exception {
+        RecordingEmitter first = (RecordingEmitter) service.subscribe(USER_ID, CLIENT_REGISTRATION_ID);
+        play(1000);
+        RecordingEmitter second = (RecordingEmitter) service.subscribe(USER_ID, CLIENT_REGISTRATION_ID);
+
+        assertEquals(1, pollers());
+        assertEquals(List.of(List.of("Intro")), second.notes()); // the last event is sent straight away
+
+        play(4000);
+        assertEquals(2, spotifyRequests.get());
+        assertEquals(List.of(List.of("Intro"), List.of("Chorus")), first.notes());
+        assertEquals(List.of(List.of("Intro"), List.of("Chorus")), second.notes());
+
+        first.leave();
+        assertEquals(1, pollers());
+        play(0);
+        assertEquals(2, first.notes().size());
+        assertEquals(3, second.notes().size());
+
+        second.leave();
+        assertEquals(0, pollers());
+        playback.add(currentlyPlaying(0));
+        playback.add(currentlyPlaying(0));
+        Thread.sleep(100); // twenty poll intervals
+        assertTrue(spotifyRequests.get() <= 4, "still polling after the last subscriber left");
+        assertEquals(3, meterRegistry.counter("jamjot.playback.stream.events").count());
+    }
+
+    /**
+     * This method serves the given playback position to the next poll and waits
+     * until that poll has completed.
+     */
+    private void play(long progressMillis) throws InterruptedException {
+        double polls = completedPolls();
+        playback.add(currentlyPlaying(progressMillis));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completedPolls() == polls) {
+            assertTrue(System.nanoTime() < deadline, "playback position was never polled");
+            Thread.sleep(1);
+        }
+    }
+
+    private double completedPolls() {
+        return meterRegistry.counter("jamjot.playback.stream.polls", "result", "success").count();
+    }
+
+    private double pollers() {
+        return meterRegistry.get("jamjot.playback.stream.pollers").gauge().value();
+    }
+
+    private static String currentlyPlaying(long progressMillis) {
+        return """
+                {"progress_ms":%d,"is_playing":true,"item":{"id":"%s"},\
+                "context":{"type":"playlist","uri":"spotify:playlist:%s"}}"""
+                .formatted(progressMillis, TRACK_ID, PLAYLIST_ID);
+    }
+
+    private static OAuth2AuthorizedClient authorizedClient() {
+        ClientRegistration registration = ClientRegistration.withRegistrationId(CLIENT_REGISTRATION_ID)
+                .clientId("client")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("http://127.0.0.1:8081/login/oauth2/code/spotify")
+                .authorizationUri("https://accounts.spotify.com/authorize")
+                .tokenUri("https://accounts.spotify.com/api/token")
+                .build();
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token",
+                Instant.now(), Instant.now().plus(Duration.ofHours(1)));
+        return new OAuth2AuthorizedClient(registration, USER_ID, accessToken);
+    }
+
+    /**
+     * Emitter that records the notes of every event sent to it, and lets the test
+     * end the subscription as if the client had disconnected.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<PlaybackNotesEvent> events = new CopyOnWriteArrayList<>();
+        private Runnable completionCallback;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(PlaybackNotesEvent.class::isInstance)
+                    .map(PlaybackNotesEvent.class::cast)
+                    .forEach(events::add);
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            super.onCompletion(callback);
+            this.completionCallback = callback;
+        }
+
+        void leave() {
+            completionCallback.run();
+        }
+
+        List<List<String>> notes() {
+            return events.stream()
+                    .map(event -> event.items().stream().map(PlaylistTimestampNoteDTO::note).toList())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nandincube.jamjot.model.User;
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Sends many concurrent first edits of the same playlist, against an in-memory
+ * database and a local stub of the Spotify API with a simulated round trip
+ * time, and checks that the playlist is verified on Spotify and saved only
+ * once.
+ */
+@DataJpaTest(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import({ PlaylistService.class, UserService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the service manages its own transactions
+class PlaylistLocksTests {
+    private static final String USER_ID = "user";
+    private static final String PLAYLIST_ID = "playlist";
+    private static final int CONCURRENT_REQUESTS = 16;
+    private static final int ROUND_TRIP_MILLIS = 50;
+
+    @Autowired
+    private PlaylistService playlistService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StubSpotify stubSpotify;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM playlist_member").executeUpdate();
+            entityManager.createQuery("DELETE FROM playlist").executeUpdate();
+            entityManager.createQuery("DELETE FROM user").executeUpdate();
+            entityManager.persist(new User(USER_ID, "User"));
+        });
+
+        stubSpotify = new StubSpotify(ROUND_TRIP_MILLIS, uri -> """
+                {"id":"%s","name":"Playlist","description":"","owner":{"id":"%s"}}"""
+                .formatted(PLAYLIST_ID, USER_ID));
+    }
+
+    @AfterEach
+    void stopStubSpotify() {
+        stubSpotify.close();
+    }
+
+    @Test
+    void concurrentFirstEditsVerifyAndSavePlaylistOnce() throws Exception {
+        PlaylistAnnotationService service = playlistAnnotationService();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS)) {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                String note = "Note " + i;
+                results.add(clients.submit(() -> {
+                    start.await();
+                    service.editPlaylistNote(USER_ID, PLAYLIST_ID, note);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        }
+
+        assertEquals(2, stubSpotify.requests()); // one ownership check and one lookup of the name
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertTrue(playlistService.findByPlaylistIdandUserId(PLAYLIST_ID, USER_ID).isPresent());
+    }
+
+    private PlaylistAnnotationService playlistAnnotationService() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        return new PlaylistAnnotationService(playlistService, userService, stubSpotify.restClient().build(),
+                new SpotifyPageFetcher(false, 1, Runnable::run),
+                new PlaylistOwnershipCache(meterRegistry, Duration.ofMinutes(10),
+                        Duration.ofSeconds(30), 100),
+                new PlaylistLocks(meterRegistry, null, 16, false), false);
+    }
+}
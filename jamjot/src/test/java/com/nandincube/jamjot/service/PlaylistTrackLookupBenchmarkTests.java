@@ -0,0 +1,95 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares checking a single track position by scanning the whole playlist
+ * against requesting only the item at that position, for a 5000 track
+ * playlist served by a local stub of the Spotify API with a simulated round
+ * trip time. Requests and bytes transferred are always compared, while the
+ * benchmark tagged test compares the time taken.
+ */
+class PlaylistTrackLookupBenchmarkTests {
+    private static final int PLAYLIST_SIZE = 5000;
+    private static final int ROUND_TRIP_MILLIS = 10;
+    private static final String PLAYLIST_ID = "benchmarkPlaylist";
+
+    private StubSpotify stubSpotify;
+
+    @BeforeEach
+    void startStubSpotify() throws IOException {
+        stubSpotify = new StubSpotify(ROUND_TRIP_MILLIS, StubSpotify.playlistTracks(PLAYLIST_ID, PLAYLIST_SIZE));
+    }
+
+    @AfterEach
+    void stopStubSpotify() {
+        stubSpotify.close();
+    }
+
+    @Test
+    void positionalLookupTransfersOneItemInsteadOfWholePlaylist() {
+        TrackAnnotationService service = trackAnnotationService();
+        int trackNumber = PLAYLIST_SIZE - 10;
+        String trackID = StubSpotify.trackID(trackNumber - 1);
+
+        stubSpotify.resetCounts();
+        assertTrue(scanForTrack(service, trackID, trackNumber));
+        int scanRequests = stubSpotify.requests();
+        long scanBytes = stubSpotify.bytes();
+
+        stubSpotify.resetCounts();
+        assertTrue(service.playlistTrackExistsOnSpotify(PLAYLIST_ID, "user", trackID, trackNumber));
+        int lookupRequests = stubSpotify.requests();
+        long lookupBytes = stubSpotify.bytes();
+
+        assertEquals(1 + PLAYLIST_SIZE / 100, scanRequests); // the snapshot, then every page
+        assertEquals(1, lookupRequests);
+        assertTrue(lookupBytes * 100 < scanBytes,
+                () -> "positional lookup transferred " + lookupBytes + " bytes, full scan " + scanBytes + " bytes");
+        assertFalse(service.playlistTrackExistsOnSpotify(PLAYLIST_ID, "user", trackID, trackNumber + 1));
+        assertFalse(service.playlistTrackExistsOnSpotify(PLAYLIST_ID, "user", trackID, PLAYLIST_SIZE + 1));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void positionalLookupIsFasterThanWholePlaylistScan() {
+        TrackAnnotationService service = trackAnnotationService();
+        int trackNumber = PLAYLIST_SIZE - 10;
+        String trackID = StubSpotify.trackID(trackNumber - 1);
+
+        long scanStart = System.nanoTime();
+        assertTrue(scanForTrack(service, trackID, trackNumber));
+        long scanMillis = (System.nanoTime() - scanStart) / 1_000_000;
+
+        long lookupStart = System.nanoTime();
+        assertTrue(service.playlistTrackExistsOnSpotify(PLAYLIST_ID, "user", trackID, trackNumber));
+        long lookupMillis = (System.nanoTime() - lookupStart) / 1_000_000;
+
+        assertTrue(lookupMillis < scanMillis,
+                () -> "positional lookup took " + lookupMillis + " ms, full scan " + scanMillis + " ms");
+    }
+
+    private static boolean scanForTrack(TrackAnnotationService service, String trackID, int trackNumber) {
+        return service.getPlaylistTracksInfoFromSpotify("user", PLAYLIST_ID).stream()
+                .anyMatch(t -> t.entry().item().getId().equals(trackID) && t.track_number() == trackNumber);
+    }
+
+    private TrackAnnotationService trackAnnotationService() {
+        SpotifyPageFetcher serialFetcher = new SpotifyPageFetcher(false, 1, Runnable::run); // matches the original paging loop
+        return StubSpotify.trackAnnotationService(stubSpotify.restClient().build(), serialFetcher,
+                new SimpleMeterRegistry());
+    }
+}
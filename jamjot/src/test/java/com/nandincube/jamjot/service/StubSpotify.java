@@ -0,0 +1,189 @@
+package com.nandincube.jamjot.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.spotify.PlaylistItemsDecoder;
+import com.nandincube.jamjot.spotify.PlaylistTracksCache;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Local stub of the Spotify API for tests that send real HTTP requests. Every
+ * response is delayed by a simulated round trip time, and the requests served
+ * and response bytes sent are counted. RestClients built from
+ * {@link #restClient()} send requests for the Spotify API to the stub instead.
+ */
+class StubSpotify implements AutoCloseable {
+    private final HttpServer server;
+    private final int roundTripMillis;
+    private final Function<URI, String> responses;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * This method starts the stub on a free local port.
+     *
+     * @param roundTripMillis - Delay before each response is sent.
+     * @param responses       - Maps the URI of a request to its JSON response.
+     * @throws IOException if the stub cannot be started.
+     */
+    StubSpotify(int roundTripMillis, Function<URI, String> responses) throws IOException {
+        this.roundTripMillis = roundTripMillis;
+        this.responses = responses;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1000);
+        server.createContext("/v1/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    void resetCounts() {
+        requests.set(0);
+        bytes.set(0);
+    }
+
+    /**
+     * This method creates a RestClient builder whose requests are sent to the
+     * stub. Further interceptors run after the redirect.
+     *
+     * @return RestClient.Builder - The builder.
+     */
+    RestClient.Builder restClient() {
+        String stubURL = "http://127.0.0.1:" + server.getAddress().getPort();
+        return RestClient.builder()
+                .requestInterceptor((request, body, execution) -> execution.execute(redirect(request, stubURL),
+                        body));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * This method creates the track annotation service for tests of its Spotify
+     * requests. The database collaborators are not set, so only methods that
+     * read from Spotify can be used.
+     *
+     * @param restClient    - Client for the Spotify API.
+     * @param pageFetcher   - Fetcher for pages of playlists and tracks.
+     * @param meterRegistry - Registry for the playlist tracks cache metrics.
+     * @return TrackAnnotationService - The service.
+     */
+    static TrackAnnotationService trackAnnotationService(RestClient restClient, SpotifyPageFetcher pageFetcher,
+            MeterRegistry meterRegistry) {
+        PlaylistAnnotationService playlistAnnotationService = new PlaylistAnnotationService(null, null, restClient,
+                pageFetcher, null, null, true);
+        return new TrackAnnotationService(null, null, null, restClient, playlistAnnotationService,
+                new PlaylistTracksCache(meterRegistry, 100), pageFetcher,
+                new PlaylistItemsDecoder(new ObjectMapper()), null, true, 500);
+    }
+
+    /**
+     * This method creates responses for a playlist of the given size, with its
+     * snapshot and pages of items. Items requested with a field filter only
+     * contain the track ID.
+     *
+     * @param playlistID   - Spotify ID of the playlist.
+     * @param playlistSize - Number of tracks in the playlist.
+     * @return Function<URI, String> - The responses.
+     */
+    static Function<URI, String> playlistTracks(String playlistID, int playlistSize) {
+        return uri -> {
+            if (!uri.getPath().endsWith("/items")) {
+                return "{\"snapshot_id\":\"snapshot\"}";
+            }
+            var query = UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+            int offset = query.containsKey("offset") ? Integer.parseInt(query.getFirst("offset")) : 0;
+            int limit = query.containsKey("limit") ? Integer.parseInt(query.getFirst("limit")) : 100;
+            return tracksPage(playlistID, playlistSize, offset, limit, query.containsKey("fields"));
+        };
+    }
+
+    static String trackID(int index) {
+        return "track%018d".formatted(index);
+    }
+
+    private static String tracksPage(String playlistID, int playlistSize, int offset, int limit, boolean idsOnly) {
+        StringBuilder items = new StringBuilder();
+        int end = Math.min(offset + limit, playlistSize);
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                items.append(',');
+            }
+            items.append(idsOnly ? "{\"item\":{\"id\":\"" + trackID(i) + "\"}}" : item(i));
+        }
+
+        if (idsOnly) {
+            return "{\"items\":[" + items + "]}";
+        }
+        String next = end < playlistSize
+                ? "\"https://api.spotify.com/v1/playlists/" + playlistID + "/items?offset=" + end + "&limit=" + limit
+                        + "\""
+                : "null";
+        return "{\"next\":" + next + ",\"total\":" + playlistSize + ",\"items\":[" + items + "]}";
+    }
+
+    private static String item(int index) {
+        return """
+                {"added_at":"2026-01-18T20:00:07Z","item":{"id":"%s","name":"Track %d",\
+                "album":{"name":"Album %d"},"artists":[{"name":"Artist %d"},{"name":"Featured Artist %d"}],\
+                "duration_ms":%d}}""".formatted(trackID(index), index, index / 12, index % 97, index % 31,
+                180000 + index);
+    }
+
+    private static HttpRequest redirect(HttpRequest request, String stubURL) {
+        URI original = request.getURI();
+        URI redirected = URI.create(stubURL + original.getRawPath()
+                + (original.getRawQuery() == null ? "" : "?" + original.getRawQuery()));
+        return new HttpRequestWrapper(request) {
+            @Override
+            public URI getURI() {
+                return redirected;
+            }
+        };
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String response = responses.apply(exchange.getRequestURI());
+
+        try {
+            Thread.sleep(roundTripMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        bytes.addAndGet(body.length);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.nandincube.jamjot.dto.TimestampNoteRow;
+
+/**
+ * Compares lookups in the interval tree with a scan of every note, over random
+ * notes and ranges.
+ */
+class TimestampIntervalTreeTests {
+
+    @Test
+    void overlappingMatchesScanOfEveryNote() {
+        Random random = new Random(42);
+        for (int size : new int[] { 0, 1, 2, 7, 100, 500 }) {
+            List<TimestampNoteRow> notes = new ArrayList<>();
+            for (long id = 1; id <= size; id++) {
+                long start = random.nextInt(300_000);
+                long end = start + random.nextInt(60_000);
+                notes.add(new TimestampNoteRow(id, Duration.ofMillis(start), Duration.ofMillis(end), "Note " + id));
+            }
+            TimestampIntervalTree tree = TimestampIntervalTree.of(notes);
+
+            for (int i = 0; i < 200; i++) {
+                long from = random.nextInt(400_000);
+                long to = random.nextBoolean() ? from : from + random.nextInt(30_000);
+                assertEquals(scan(notes, from, to), tree.overlapping(Duration.ofMillis(from), Duration.ofMillis(to)));
+            }
+        }
+    }
+
+    @Test
+    void nextChangeAfterIsFirstPositionWithDifferentNotes() {
+        Random random = new Random(7);
+        List<TimestampNoteRow> notes = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            long start = random.nextInt(20_000);
+            notes.add(new TimestampNoteRow(id, Duration.ofMillis(start),
+                    Duration.ofMillis(start + random.nextInt(5_000)), "Note " + id));
+        }
+        TimestampIntervalTree tree = TimestampIntervalTree.of(notes);
+
+        for (long position = 0; position < 26_000; position += 37) {
+            List<TimestampNoteRow> current = scan(notes, position, position);
+            Long expected = null;
+            for (long later = position + 1; later <= 26_000; later++) {
+                if (!scan(notes, later, later).equals(current)) {
+                    expected = later;
+                    break;
+                }
+            }
+
+            Duration next = tree.nextChangeAfter(Duration.ofMillis(position));
+            assertEquals(expected, next == null ? null : next.toMillis());
+        }
+    }
+
+    private static List<TimestampNoteRow> scan(List<TimestampNoteRow> notes, long from, long to) {
+        return notes.stream()
+                .filter(note -> note.start().toMillis() <= to && note.end().toMillis() >= from)
+                .sorted(Comparator.comparing(TimestampNoteRow::start).thenComparing(TimestampNoteRow::id))
+                .toList();
+    }
+}
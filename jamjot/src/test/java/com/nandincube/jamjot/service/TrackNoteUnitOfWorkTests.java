@@ -0,0 +1,289 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.dto.TrackNoteRequestDTO;
+import com.nandincube.jamjot.dto.TrackNoteResultDTO;
+import com.nandincube.jamjot.dto.TrackNoteResultDTO.Status;
+import com.nandincube.jamjot.model.PlaylistMember;
+import com.nandincube.jamjot.model.Playlist;
+import com.nandincube.jamjot.model.PlaylistMemberID;
+import com.nandincube.jamjot.model.Track;
+import com.nandincube.jamjot.model.User;
+import com.nandincube.jamjot.repository.TrackRepository;
+import com.nandincube.jamjot.spotify.PlaylistItemsDecoder;
+import com.nandincube.jamjot.spotify.PlaylistTracksCache;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validator;
+
+/**
+ * Counts the SQL statements sent when the first note is added to a track in a
+ * playlist that is already stored, against an in-memory database and a mocked
+ * Spotify API. Native upserts are disabled, as the in-memory database does not
+ * support them.
+ */
+@DataJpaTest(properties = {
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import({ PlaylistService.class, PlaylistMemberService.class, TrackService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the service manages its own transactions
+class TrackNoteUnitOfWorkTests {
+    private static final String USER_ID = "user";
+    private static final String PLAYLIST_ID = "playlist";
+    private static final String TRACK_ID = "track000000000000000001";
+    private static final int TRACK_NUMBER = 5;
+
+    @Autowired
+    private PlaylistService playlistService;
+    @Autowired
+    private PlaylistMemberService playlistMemberService;
+    @Autowired
+    private TrackService trackService;
+    @Autowired
+    private TrackRepository trackRepository;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private MockRestServiceServer spotify;
+    private RestClient restClient;
+    private TrackAnnotationService trackAnnotationService;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM playlist_member").executeUpdate();
+            entityManager.createQuery("DELETE FROM track").executeUpdate();
+            entityManager.createQuery("DELETE FROM playlist").executeUpdate();
+            entityManager.createQuery("DELETE FROM user").executeUpdate();
+
+            User user = new User(USER_ID, "User");
+            entityManager.persist(user);
+            entityManager.persist(new Playlist(PLAYLIST_ID, "Playlist", user));
+        });
+
+        RestClient.Builder restClientBuilder = RestClient.builder();
+        spotify = MockRestServiceServer.bindTo(restClientBuilder).build();
+        restClient = restClientBuilder.build();
+        trackAnnotationService = newTrackAnnotationService(trackService);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void firstNoteOnNewTrackInsertsTrackAndMemberInOneFlush() throws Exception {
+        expectTrackAtPosition();
+
+        statistics.clear();
+        trackAnnotationService.editTrackNote(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, "First note");
+
+        // note update, playlist and track lookups, then the track and member inserts
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        spotify.verify();
+        assertEquals("First note", storedNote());
+    }
+
+    @Test
+    void firstNoteOnStoredTrackInsertsOnlyMember() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(
+                new Track(TRACK_ID, "Track", "Artist", Duration.ofMillis(180000))));
+        expectTrackAtPosition();
+
+        statistics.clear();
+        trackAnnotationService.editTrackNote(USER_ID, PLAYLIST_ID, TRACK_ID, TRACK_NUMBER, "First note");
+
+        // note update, playlist and track lookups, then the member insert
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        spotify.verify();
+        assertEquals("First note", storedNote());
+    }
+
+    @Test
+    void missingTrackIsSavedThenLoadedOnce() throws Exception {
+        expectTrackAtPosition();
+
+        statistics.clear();
+        PlaylistMember trackInPlaylist = trackAnnotationService.getOrSavePlaylistTrack(USER_ID, PLAYLIST_ID,
+                TRACK_ID, TRACK_NUMBER);
+
+        // member lookup, playlist and track lookups, the track and member inserts, then the member and its track
+        // are loaded once
+        assertEquals(6, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getEntityInsertCount());
+        spotify.verify();
+        assertEquals(TRACK_ID, trackInPlaylist.getTrack().getTrackID());
+        assertEquals("Track", trackInPlaylist.getTrack().getName());
+    }
+
+    @Test
+    void bulkNotesAreVerifiedWithOneScanAndWrittenInBatches() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            Track track = new Track(trackID(1), "Track", "Artist", Duration.ofMillis(180000));
+            PlaylistMember trackInPlaylist = new PlaylistMember(track,
+                    entityManager.getReference(Playlist.class, PLAYLIST_ID), 1);
+            trackInPlaylist.setNote("Old note");
+            entityManager.persist(track);
+            entityManager.persist(trackInPlaylist);
+        });
+        expectPlaylistTracks(30);
+
+        List<TrackNoteRequestDTO> items = new ArrayList<>();
+        for (int trackNumber = 1; trackNumber <= 25; trackNumber++) {
+            items.add(new TrackNoteRequestDTO(trackID(trackNumber), trackNumber, "Note " + trackNumber));
+        }
+        items.add(new TrackNoteRequestDTO(trackID(27), 26, "Wrong track"));
+        items.add(new TrackNoteRequestDTO(trackID(31), 31, "Past the end"));
+        items.add(new TrackNoteRequestDTO(trackID(28), 28, null));
+
+        statistics.clear();
+        ArrayList<TrackNoteResultDTO> results = trackAnnotationService.editTrackNotes(USER_ID, PLAYLIST_ID, items);
+
+        // playlist, track and member lookups, then one batch each of track inserts, member inserts and updates
+        assertEquals(6, statistics.getPrepareStatementCount());
+        assertEquals(48, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+        spotify.verify();
+        assertEquals(items.size(), results.size());
+        assertEquals(25, results.stream().filter(result -> result.status() == Status.UPDATED).count());
+        assertEquals(Status.TRACK_NOT_FOUND, results.get(25).status());
+        assertEquals(Status.TRACK_NOT_FOUND, results.get(26).status());
+        assertEquals(Status.INVALID, results.get(27).status());
+        assertEquals("Note 1", storedNote(trackID(1), 1));
+        assertEquals("Note 25", storedNote(trackID(25), 25));
+    }
+
+    @Test
+    void bulkNotesAreWrittenAgainWhenATrackIsCreatedConcurrently() throws Exception {
+        expectPlaylistTracks(3);
+        // the first lookup of the stored tracks misses a track saved by another request just after it
+        TrackService staleTrackService = new TrackService(trackRepository, validator, entityManager) {
+            private boolean stale = true;
+
+            @Override
+            public Set<String> findStoredTrackIDs(Collection<String> trackIDs) {
+                if (stale) {
+                    stale = false;
+                    TransactionTemplate otherRequest = new TransactionTemplate(transactionManager);
+                    otherRequest.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                    otherRequest.executeWithoutResult(status -> entityManager.persist(
+                            new Track(trackID(2), "Track", "Artist", Duration.ofMillis(180000))));
+                    return new HashSet<>();
+                }
+                return super.findStoredTrackIDs(trackIDs);
+            }
+        };
+
+        ArrayList<TrackNoteResultDTO> results = newTrackAnnotationService(staleTrackService).editTrackNotes(USER_ID,
+                PLAYLIST_ID, List.of(new TrackNoteRequestDTO(trackID(1), 1, "Note 1"),
+                        new TrackNoteRequestDTO(trackID(2), 2, "Note 2")));
+
+        spotify.verify();
+        assertEquals(List.of(Status.UPDATED, Status.UPDATED),
+                results.stream().map(TrackNoteResultDTO::status).toList());
+        assertEquals("Note 1", storedNote(trackID(1), 1));
+        assertEquals("Note 2", storedNote(trackID(2), 2));
+    }
+
+    private TrackAnnotationService newTrackAnnotationService(TrackService trackService) {
+        SpotifyPageFetcher pageFetcher = new SpotifyPageFetcher(false, 1, Runnable::run);
+        PlaylistAnnotationService playlistAnnotationService = new PlaylistAnnotationService(playlistService, null,
+                restClient, pageFetcher, null, null, false);
+        return new TrackAnnotationService(playlistService, playlistMemberService, trackService,
+                restClient, playlistAnnotationService, new PlaylistTracksCache(new SimpleMeterRegistry(), 10),
+                pageFetcher, new PlaylistItemsDecoder(new ObjectMapper()), transactionTemplate, false, 500);
+    }
+
+    private static String trackID(int trackNumber) {
+        return "track%018d".formatted(trackNumber);
+    }
+
+    private void expectPlaylistTracks(int tracks) {
+        spotify.expect(requestTo("https://api.spotify.com/v1/playlists/" + PLAYLIST_ID + "?fields=snapshot_id"))
+                .andRespond(withSuccess("""
+                        {"snapshot_id":"snapshot"}""", MediaType.APPLICATION_JSON));
+        String items = IntStream.rangeClosed(1, tracks)
+                .mapToObj(trackNumber -> """
+                        {"item":{"id":"%s","name":"Track","artists":[{"name":"Artist"}],"duration_ms":180000}}"""
+                        .formatted(trackID(trackNumber)))
+                .collect(Collectors.joining(","));
+        spotify.expect(requestTo(Matchers.startsWith("https://api.spotify.com/v1/playlists/" + PLAYLIST_ID + "/items")))
+                .andRespond(withSuccess("{\"total\":%d,\"items\":[%s]}".formatted(tracks, items),
+                        MediaType.APPLICATION_JSON));
+    }
+
+    private void expectTrackAtPosition() {
+        spotify.expect(requestTo(Matchers.startsWith("https://api.spotify.com/v1/playlists/" + PLAYLIST_ID
+                + "/items?offset=" + (TRACK_NUMBER - 1) + "&limit=1")))
+                .andRespond(withSuccess("""
+                        {"items":[{"item":{"id":"%s","name":"Track","artists":[{"name":"Artist"}],\
+                        "duration_ms":180000}}]}""".formatted(TRACK_ID), MediaType.APPLICATION_JSON));
+    }
+
+    private String storedNote() {
+        return storedNote(TRACK_ID, TRACK_NUMBER);
+    }
+
+    private String storedNote(String trackID, int trackNumber) {
+        return transactionTemplate.execute(status -> playlistMemberService
+                .findById(new PlaylistMemberID(trackID, PLAYLIST_ID, trackNumber))
+                .orElseThrow()
+                .getNote());
+    }
+}
@@ -0,0 +1,157 @@
+package com.nandincube.jamjot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache;
+import com.nandincube.jamjot.spotify.SpotifyCircuitBreaker;
+import com.nandincube.jamjot.spotify.SpotifyClientHttpRequestFactory;
+import com.nandincube.jamjot.spotify.SpotifyPageFetcher;
+import com.nandincube.jamjot.spotify.SpotifyRequestCoalescer;
+import com.nandincube.jamjot.spotify.SpotifyRequestScheduler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs the Spotify client stack (transport, interceptors and paging) in
+ * virtual thread mode against a local stub of the Spotify API with a simulated
+ * round trip time. Checks that virtual threads are never pinned to their
+ * carrier while blocked on Spotify and that concurrent requests are each sent
+ * once. The benchmark tagged test compares handling many concurrent requests
+ * on virtual threads with handling them on a fixed pool of platform threads,
+ * standing in for the servlet container's worker pool.
+ */
+class VirtualThreadModeTests {
+    private static final int PLAYLIST_SIZE = 450;
+    private static final int ROUND_TRIP_MILLIS = 200;
+    private static final int CONCURRENT_REQUESTS = 200;
+    private static final int PLATFORM_POOL_SIZE = 20;
+
+    private StubSpotify stubSpotify;
+
+    @BeforeEach
+    void startStubSpotify() throws IOException {
+        stubSpotify = new StubSpotify(ROUND_TRIP_MILLIS, StubSpotify.playlistTracks("playlist", PLAYLIST_SIZE));
+    }
+
+    @AfterEach
+    void stopStubSpotify() {
+        stubSpotify.close();
+    }
+
+    @Test
+    void spotifyCallsDoNotPinCarrierThreads() throws Exception {
+        TrackAnnotationService service = trackAnnotationService(true);
+
+        List<RecordedEvent> pinned;
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    String userID = "user" + i;
+                    results.add(requests.submit(() -> service.getPlaylistTracksInfoFromSpotify(userID, "playlist")
+                            .size() == PLAYLIST_SIZE
+                            && service.playlistTrackExistsOnSpotify("playlist", userID, StubSpotify.trackID(9), 10)));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            }
+
+            recording.stop();
+            Path file = Files.createTempFile("jamjot-pinning", ".jfr");
+            try {
+                recording.dump(file);
+                pinned = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        assertEquals(0, pinned.size(), () -> "Virtual threads were pinned:\n" + pinned.stream()
+                .map(event -> String.valueOf(event.getStackTrace()))
+                .collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    void concurrentRequestsOnVirtualThreadsSendOneSpotifyRequestEach() throws Exception {
+        runConcurrentRequests(trackAnnotationService(true), Executors.newVirtualThreadPerTaskExecutor());
+
+        assertEquals(CONCURRENT_REQUESTS, stubSpotify.requests());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void virtualThreadsHandleMoreConcurrentRequestsThanPlatformPool() throws Exception {
+        long platformMillis = runConcurrentRequests(trackAnnotationService(false),
+                Executors.newFixedThreadPool(PLATFORM_POOL_SIZE));
+        long virtualMillis = runConcurrentRequests(trackAnnotationService(true),
+                Executors.newVirtualThreadPerTaskExecutor());
+
+        assertTrue(virtualMillis < platformMillis, () -> "%d requests took %d ms on virtual threads and %d ms on %d"
+                .formatted(CONCURRENT_REQUESTS, virtualMillis, platformMillis, PLATFORM_POOL_SIZE)
+                + " platform threads");
+    }
+
+    private long runConcurrentRequests(TrackAnnotationService service, ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        try (executor) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                int trackNumber = i % PLAYLIST_SIZE + 1;
+                results.add(executor.submit(() -> service.playlistTrackExistsOnSpotify("playlist", "user",
+                        StubSpotify.trackID(trackNumber - 1), trackNumber)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private TrackAnnotationService trackAnnotationService(boolean virtualThreads) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpotifyCircuitBreaker circuitBreaker = new SpotifyCircuitBreaker(meterRegistry, 20, 10, 50,
+                Duration.ofSeconds(3), Duration.ofSeconds(30));
+        SpotifyRequestScheduler requestScheduler = new SpotifyRequestScheduler(meterRegistry, 100_000, 100_000,
+                Duration.ofSeconds(10), 3);
+        RestClient restClient = stubSpotify.restClient()
+                .requestFactory(new SpotifyClientHttpRequestFactory(meterRegistry, Duration.ofSeconds(2),
+                        Duration.ofSeconds(5), Duration.ofSeconds(10), 200, false, Duration.ofMillis(50), 0.05,
+                        requestScheduler, circuitBreaker, virtualThreads))
+                .requestInterceptor(new SpotifyRequestCoalescer(meterRegistry))
+                .requestInterceptor(new PlaylistOwnershipCache(meterRegistry, Duration.ofMinutes(10),
+                        Duration.ofSeconds(30), 100))
+                .requestInterceptor(circuitBreaker)
+                .requestInterceptor(requestScheduler)
+                .build();
+        ExecutorService pagingExecutor = SpotifyPageFetcher.newPagingExecutor(CONCURRENT_REQUESTS * 4,
+                CONCURRENT_REQUESTS * 4, virtualThreads);
+        return StubSpotify.trackAnnotationService(restClient, new SpotifyPageFetcher(true, 4, pagingExecutor),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,75 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nandincube.jamjot.dto.PlaylistTrackIDsResponse;
+
+class PlaylistItemsDecoderTests {
+    private final PlaylistItemsDecoder decoder = new PlaylistItemsDecoder(new ObjectMapper());
+
+    @Test
+    void decodesPagingFieldsAndTrackIDsInOrder() throws IOException {
+        PlaylistTrackIDsResponse page = decode("""
+                {"next": "https://api.spotify.com/v1/playlists/p/items?offset=2", "total": 3,
+                 "items": [{"item": {"id": "a"}}, {"item": {"id": "b"}}]}
+                """);
+
+        assertEquals("https://api.spotify.com/v1/playlists/p/items?offset=2", page.next());
+        assertEquals(3, page.total());
+        assertEquals(Arrays.asList("a", "b"), page.items());
+    }
+
+    @Test
+    void itemsWithoutTrackKeepTheirPosition() throws IOException {
+        PlaylistTrackIDsResponse page = decode("""
+                {"items": [{"item": null}, {"item": {"name": "local file"}}, {"added_at": "2024-01-01"},
+                 {"item": {"id": null}}, {"item": {"id": "d"}}]}
+                """);
+
+        assertEquals(Arrays.asList(null, null, null, null, "d"), page.items());
+    }
+
+    @Test
+    void unknownNestedFieldsAreSkipped() throws IOException {
+        PlaylistTrackIDsResponse page = decode("""
+                {"href": "x", "limit": 100, "owner": {"id": "not a track", "images": [{"id": "nested"}]},
+                 "items": [{"added_by": {"id": "user"},
+                            "item": {"album": {"id": "album", "artists": [{"id": "artist"}]},
+                                     "id": "a", "external_ids": {"isrc": "X"}}}],
+                 "total": 1}
+                """);
+
+        assertEquals(Arrays.asList("a"), page.items());
+        assertEquals(1, page.total());
+    }
+
+    @Test
+    void nullPagingFieldsAreDecodedAsNull() throws IOException {
+        PlaylistTrackIDsResponse page = decode("""
+                {"next": null, "total": null, "items": []}
+                """);
+
+        assertNull(page.next());
+        assertNull(page.total());
+        assertEquals(0, page.items().size());
+    }
+
+    @Test
+    void bodyThatIsNotAnObjectIsRejected() {
+        assertThrows(IOException.class, () -> decode("[]"));
+    }
+
+    private PlaylistTrackIDsResponse decode(String json) throws IOException {
+        return decoder.decodeTrackIDs(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,124 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.nandincube.jamjot.spotify.PlaylistOwnershipCache.Ownership;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PlaylistOwnershipCacheTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cachedOwnershipIsReturnedUntilInvalidated() {
+        PlaylistOwnershipCache cache = cache(Duration.ofMinutes(10), 100);
+
+        assertNull(cache.get("user", "playlist"));
+        cache.put("user", "playlist", Ownership.OWNED);
+        assertEquals(Ownership.OWNED, cache.get("user", "playlist"));
+        assertNull(cache.get("otherUser", "playlist"));
+
+        cache.invalidate("user", "playlist");
+        assertNull(cache.get("user", "playlist"));
+
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.playlist.ownership.cache.requests", "result", "hit")
+                .count());
+        assertEquals(3, meterRegistry.counter("jamjot.spotify.playlist.ownership.cache.requests", "result", "miss")
+                .count());
+    }
+
+    @Test
+    void notFoundExpiresSoonerThanOwnership() {
+        PlaylistOwnershipCache cache = cache(Duration.ZERO, 100);
+
+        cache.put("user", "owned", Ownership.OWNED);
+        cache.put("user", "notOwned", Ownership.NOT_OWNED);
+        cache.put("user", "missing", Ownership.NOT_FOUND);
+
+        assertEquals(Ownership.OWNED, cache.get("user", "owned"));
+        assertEquals(Ownership.NOT_OWNED, cache.get("user", "notOwned"));
+        assertNull(cache.get("user", "missing"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        PlaylistOwnershipCache cache = cache(Duration.ofSeconds(30), 2);
+
+        cache.put("user", "first", Ownership.OWNED);
+        cache.put("user", "second", Ownership.OWNED);
+        cache.get("user", "first");
+        cache.put("user", "third", Ownership.OWNED);
+
+        assertEquals(Ownership.OWNED, cache.get("user", "first"));
+        assertNull(cache.get("user", "second"));
+        assertEquals(Ownership.OWNED, cache.get("user", "third"));
+    }
+
+    @Test
+    void forbiddenResponseInvalidatesThatPlaylist() throws IOException {
+        PlaylistOwnershipCache cache = cache(Duration.ofSeconds(30), 100);
+        cache.put("user", "playlist", Ownership.OWNED);
+        cache.put("user", "otherPlaylist", Ownership.OWNED);
+
+        respondAs("user", "/v1/playlists/playlist/items?offset=0", HttpStatus.FORBIDDEN, cache);
+
+        assertNull(cache.get("user", "playlist"));
+        assertEquals(Ownership.OWNED, cache.get("user", "otherPlaylist"));
+    }
+
+    @Test
+    void unauthorizedResponseInvalidatesEveryPlaylistOfThatUser() throws IOException {
+        PlaylistOwnershipCache cache = cache(Duration.ofSeconds(30), 100);
+        cache.put("user", "playlist", Ownership.OWNED);
+        cache.put("user", "otherPlaylist", Ownership.NOT_OWNED);
+        cache.put("otherUser", "playlist", Ownership.NOT_OWNED);
+
+        respondAs("user", "/v1/me", HttpStatus.UNAUTHORIZED, cache);
+
+        assertNull(cache.get("user", "playlist"));
+        assertNull(cache.get("user", "otherPlaylist"));
+        assertEquals(Ownership.NOT_OWNED, cache.get("otherUser", "playlist"));
+    }
+
+    @Test
+    void successfulResponseKeepsCachedOwnership() throws IOException {
+        PlaylistOwnershipCache cache = cache(Duration.ofSeconds(30), 100);
+        cache.put("user", "playlist", Ownership.OWNED);
+
+        respondAs("user", "/v1/playlists/playlist", HttpStatus.OK, cache);
+
+        assertEquals(Ownership.OWNED, cache.get("user", "playlist"));
+    }
+
+    private PlaylistOwnershipCache cache(Duration notFoundTTL, int maxEntries) {
+        return new PlaylistOwnershipCache(meterRegistry, Duration.ofMinutes(10), notFoundTTL, maxEntries);
+    }
+
+    private static void respondAs(String userID, String path, HttpStatus status, PlaylistOwnershipCache cache)
+            throws IOException {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(userID, null));
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+                URI.create("https://api.spotify.com" + path));
+        cache.intercept(request, new byte[0], (req, body) -> new MockClientHttpResponse(new byte[0], status))
+                .close();
+    }
+}
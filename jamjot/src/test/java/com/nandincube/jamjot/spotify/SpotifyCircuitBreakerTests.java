@@ -0,0 +1,77 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SpotifyCircuitBreakerTests {
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+            URI.create("https://api.spotify.com/v1/me/playlists"));
+
+    @Test
+    void opensOnceFailureRateIsReachedAndFailsFast() throws IOException {
+        SpotifyCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        send(breaker, HttpStatus.OK);
+        send(breaker, HttpStatus.OK);
+        send(breaker, HttpStatus.SERVICE_UNAVAILABLE);
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, breaker.getState());
+
+        send(breaker, HttpStatus.BAD_GATEWAY);
+        assertEquals(SpotifyCircuitBreaker.State.OPEN, breaker.getState());
+
+        int[] executions = { 0 };
+        assertThrows(SpotifyUnavailableException.class, () -> breaker.intercept(request, new byte[0],
+                (req, body) -> {
+                    executions[0]++;
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                }));
+        assertEquals(0, executions[0]);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() throws IOException {
+        SpotifyCircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            send(breaker, HttpStatus.NOT_FOUND);
+        }
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void closesAfterSuccessfulTrialRequest() throws IOException {
+        SpotifyCircuitBreaker breaker = breaker(Duration.ZERO);
+
+        for (int i = 0; i < 4; i++) {
+            send(breaker, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        assertEquals(SpotifyCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        send(breaker, HttpStatus.OK);
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private static SpotifyCircuitBreaker breaker(Duration openDuration) {
+        return new SpotifyCircuitBreaker(new SimpleMeterRegistry(), 4, 4, 50, Duration.ofSeconds(3), openDuration);
+    }
+
+    private void send(SpotifyCircuitBreaker breaker, HttpStatus status) throws IOException {
+        ClientHttpRequestExecution execution = (req, body) -> new MockClientHttpResponse(new byte[0], status);
+        breaker.intercept(request, new byte[0], execution);
+    }
+}
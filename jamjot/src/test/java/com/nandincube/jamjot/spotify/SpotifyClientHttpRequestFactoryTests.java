@@ -0,0 +1,191 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.nandincube.jamjot.exceptions.SpotifyDeadlineExceededException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SpotifyClientHttpRequestFactoryTests {
+    private static final int SLOW_MILLIS = 2000;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int slowRequest = -1;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SpotifyClientHttpRequestFactory factory;
+
+    @BeforeEach
+    void startStubSpotify() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        factory = newFactory(true, new SpotifyRequestScheduler(meterRegistry, 100, 100, Duration.ofSeconds(10), 3));
+    }
+
+    @AfterEach
+    void stopStubSpotify() {
+        server.stop(0);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void slowGetIsHedgedAndFirstResponseWins() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            get();
+        }
+
+        slowRequest = requests.get(); // only the next request is slow, so the hedge answers first
+        long start = System.nanoTime();
+        String body = get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("ok", body);
+        assertTrue(millis < SLOW_MILLIS, "hedged request took " + millis + " ms");
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.http.client.requests.hedged").count());
+    }
+
+    @Test
+    void hedgeIsSkippedWithoutRateLimitBudget() throws IOException {
+        SpotifyRequestScheduler requestScheduler = new SpotifyRequestScheduler(meterRegistry, 0.001, 1,
+                Duration.ofSeconds(10), 3);
+        assertTrue(requestScheduler.tryAcquire());
+        factory = newFactory(true, requestScheduler);
+        for (int i = 0; i < 20; i++) {
+            get();
+        }
+
+        slowRequest = requests.get();
+        assertEquals("ok", get());
+
+        assertEquals(21, requests.get()); // no hedge reached Spotify
+        assertEquals(0, meterRegistry.counter("jamjot.spotify.http.client.requests.hedged").count());
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.http.client.requests.hedge.skipped").count());
+    }
+
+    @Test
+    void hedgesAreCappedAtMaximumRatio() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            get();
+        }
+
+        slowRequest = requests.get();
+        get();
+        slowRequest = requests.get();
+        get(); // one request later, the hedge budget is used up
+
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.http.client.requests.hedged").count());
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.http.client.requests.hedge.skipped").count());
+    }
+
+    @Test
+    void headerWaitIsBoundedByDeadlineWithoutHedging() {
+        factory = newFactory(false, new SpotifyRequestScheduler(meterRegistry, 100, 100, Duration.ofSeconds(10), 3));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        SpotifyDeadline.start(Duration.ofMillis(200));
+        slowRequest = 0;
+
+        long start = System.nanoTime();
+        assertThrows(SpotifyDeadlineExceededException.class, this::get);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(millis < SLOW_MILLIS, "request gave up after " + millis + " ms");
+    }
+
+    @Test
+    void requestFailsFastOnceDeadlineHasPassed() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        SpotifyDeadline.start(Duration.ZERO);
+
+        assertThrows(SpotifyDeadlineExceededException.class, this::get);
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void gzipEncodedResponseIsDecompressed() throws IOException {
+        assertEquals("ok", get("/v1/gzip"));
+    }
+
+    @Test
+    void emptyGzipEncodedResponseIsReadAsEmpty() throws IOException {
+        assertEquals("", get("/v1/empty"));
+    }
+
+    private SpotifyClientHttpRequestFactory newFactory(boolean hedgingEnabled,
+            SpotifyRequestScheduler requestScheduler) {
+        SpotifyCircuitBreaker circuitBreaker = new SpotifyCircuitBreaker(meterRegistry, 20, 10, 50,
+                Duration.ofSeconds(3), Duration.ofSeconds(30));
+        return new SpotifyClientHttpRequestFactory(meterRegistry, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                Duration.ofSeconds(10), 8, hedgingEnabled, Duration.ofMillis(50), 0.05, requestScheduler,
+                circuitBreaker, false);
+    }
+
+    private String get() throws IOException {
+        return get("/v1/me");
+    }
+
+    private String get(String path) throws IOException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        try (ClientHttpResponse response = factory.createRequest(uri, HttpMethod.GET).execute()) {
+            return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (requests.getAndIncrement() == slowRequest) {
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/v1/empty")) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+        if (path.equals("/v1/gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
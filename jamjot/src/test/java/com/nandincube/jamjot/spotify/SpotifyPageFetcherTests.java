@@ -0,0 +1,81 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.nandincube.jamjot.dto.SpotifyPage;
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+class SpotifyPageFetcherTests {
+    private static final String URL = "https://api.spotify.com/v1/me/playlists";
+    private static final int LIMIT = 10;
+
+    private final ExecutorService pagingExecutor = SpotifyPageFetcher.newPagingExecutor(8, 100, false);
+    private final SpotifyPageFetcher fetcher = new SpotifyPageFetcher(true, 2, pagingExecutor);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @AfterEach
+    void stopPagingExecutor() {
+        pagingExecutor.shutdownNow();
+    }
+
+    @Test
+    void pagesAreReturnedInOrder() {
+        List<Integer> items = fetcher.fetchAll(URL, LIMIT, url -> {
+            requests.incrementAndGet();
+            return page(offset(url), 95);
+        });
+
+        assertEquals(IntStream.range(0, 95).boxed().toList(), items);
+        assertEquals(10, requests.get());
+    }
+
+    @Test
+    void noMorePagesAreRequestedOnceOneFails() {
+        assertThrows(SpotifyUnavailableException.class, () -> fetcher.fetchAll(URL, LIMIT, url -> {
+            requests.incrementAndGet();
+            if (offset(url) == LIMIT) {
+                throw new SpotifyUnavailableException(1);
+            }
+            if (offset(url) > 0) {
+                sleep(50); // the other pages are still in flight when the second page fails
+            }
+            return page(offset(url), 1000);
+        }));
+
+        // the first page and at most one window, as an outstanding page may be cancelled before it is requested
+        assertTrue(requests.get() <= 3, requests.get() + " of 100 pages were requested");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the outstanding page was cancelled
+        }
+    }
+
+    private static int offset(String url) {
+        return Integer.parseInt(UriComponentsBuilder.fromUriString(url).build().getQueryParams().getFirst("offset"));
+    }
+
+    private static Page page(int offset, int total) {
+        ArrayList<Integer> items = new ArrayList<>();
+        IntStream.range(offset, Math.min(offset + LIMIT, total)).forEach(items::add);
+        return new Page(offset + LIMIT < total ? URL + "?offset=" + (offset + LIMIT) : null, total, items);
+    }
+
+    private record Page(String next, Integer total, ArrayList<Integer> items) implements SpotifyPage<Integer> {
+    }
+}
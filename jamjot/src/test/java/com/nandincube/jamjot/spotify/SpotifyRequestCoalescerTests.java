@@ -0,0 +1,178 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SpotifyRequestCoalescerTests {
+    private static final URI PLAYLISTS = URI.create("https://api.spotify.com/v1/me/playlists");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SpotifyRequestCoalescer coalescer = new SpotifyRequestCoalescer(meterRegistry);
+    private final AtomicInteger executions = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stopCallers() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalGetsShareOneRequest() throws Exception {
+        List<CompletableFuture<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(sendAs("user", HttpMethod.GET, blockedUntilReleased()));
+        }
+        awaitCoalesced(4);
+        release.countDown();
+
+        for (CompletableFuture<String> response : responses) {
+            assertEquals("playlists", response.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void requestsOfDifferentUsersAreNotShared() throws Exception {
+        CompletableFuture<String> first = sendAs("user", HttpMethod.GET, blockedUntilReleased());
+        CompletableFuture<String> second = sendAs("otherUser", HttpMethod.GET, blockedUntilReleased());
+        awaitExecutions(2);
+        release.countDown();
+
+        assertEquals("playlists", first.get(5, TimeUnit.SECONDS));
+        assertEquals("playlists", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, meterRegistry.counter("jamjot.spotify.coalesced.requests").count());
+    }
+
+    @Test
+    void nonGetRequestsAreNotShared() throws Exception {
+        CompletableFuture<String> first = sendAs("user", HttpMethod.POST, blockedUntilReleased());
+        CompletableFuture<String> second = sendAs("user", HttpMethod.POST, blockedUntilReleased());
+        awaitExecutions(2);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(0, meterRegistry.counter("jamjot.spotify.coalesced.requests").count());
+    }
+
+    @Test
+    void failureIsSharedWithWaitingRequests() throws Exception {
+        ClientHttpRequestExecution failing = (req, body) -> {
+            executions.incrementAndGet();
+            await(release);
+            throw new IOException("Connection reset");
+        };
+        CompletableFuture<String> leader = sendAs("user", HttpMethod.GET, failing);
+        CompletableFuture<String> follower = sendAs("user", HttpMethod.GET, failing);
+        awaitCoalesced(1);
+        release.countDown();
+
+        for (CompletableFuture<String> response : List.of(leader, follower)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause().getCause());
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void completedRequestIsNotReused() throws Exception {
+        release.countDown();
+
+        sendAs("user", HttpMethod.GET, blockedUntilReleased()).get(5, TimeUnit.SECONDS);
+        sendAs("user", HttpMethod.GET, blockedUntilReleased()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void soloRequestIsPassedThroughWithoutBuffering() throws IOException {
+        MockClientHttpResponse live = new MockClientHttpResponse("playlists".getBytes(StandardCharsets.UTF_8),
+                HttpStatus.OK);
+
+        ClientHttpResponse response = coalescer.intercept(new MockClientHttpRequest(HttpMethod.GET, PLAYLISTS),
+                new byte[0], (req, body) -> live);
+
+        assertSame(live, response);
+        assertEquals(0, meterRegistry.counter("jamjot.spotify.coalesced.requests").count());
+    }
+
+    private ClientHttpRequestExecution blockedUntilReleased() {
+        return (req, body) -> {
+            executions.incrementAndGet();
+            await(release);
+            return new MockClientHttpResponse("playlists".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+        };
+    }
+
+    private CompletableFuture<String> sendAs(String userID, HttpMethod method, ClientHttpRequestExecution execution) {
+        return CompletableFuture.supplyAsync(() -> {
+            SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(userID, null));
+            try (ClientHttpResponse response = coalescer.intercept(new MockClientHttpRequest(method, PLAYLISTS),
+                    new byte[0], execution)) {
+                return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }, callers);
+    }
+
+    private void awaitCoalesced(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter("jamjot.spotify.coalesced.requests").count() < count) {
+            assertTrue(System.nanoTime() < deadline, "requests were never coalesced");
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitExecutions(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executions.get() < count) {
+            assertTrue(System.nanoTime() < deadline, "requests were never sent");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nandincube.jamjot.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import com.nandincube.jamjot.exceptions.SpotifyUnavailableException;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SpotifyRequestSchedulerTests {
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+            URI.create("https://api.spotify.com/v1/me/playlists"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rateLimitedRequestIsRetriedAfterRetryAfter() throws IOException {
+        SpotifyRequestScheduler scheduler = scheduler(1000, 10, 3);
+        AtomicInteger executions = new AtomicInteger();
+
+        long start = System.nanoTime();
+        scheduler.intercept(request, new byte[0], (req, body) -> executions.getAndIncrement() == 0
+                ? response(HttpStatus.TOO_MANY_REQUESTS, "1")
+                : response(HttpStatus.OK, null));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(2, executions.get());
+        assertTrue(millis >= 1000, "retried after " + millis + " ms");
+        assertEquals(1, meterRegistry.counter("jamjot.spotify.scheduler.rate.limited").count());
+    }
+
+    @Test
+    void givesUpOnceMaxRetriesAreUsed() {
+        SpotifyRequestScheduler scheduler = scheduler(1000, 10, 2);
+        AtomicInteger executions = new AtomicInteger();
+
+        SpotifyUnavailableException e = assertThrows(SpotifyUnavailableException.class,
+                () -> scheduler.intercept(request, new byte[0], (req, body) -> {
+                    executions.incrementAndGet();
+                    return response(HttpStatus.TOO_MANY_REQUESTS, "0");
+                }));
+
+        assertEquals(3, executions.get()); // the first attempt and two retries
+        assertEquals(0, e.getRetryAfterSeconds());
+        assertEquals(3, meterRegistry.counter("jamjot.spotify.scheduler.rate.limited").count());
+    }
+
+    @Test
+    void backgroundRequestWaitsWhileInteractiveRequestIsQueued() throws Exception {
+        SpotifyRequestScheduler scheduler = scheduler(5, 1, 3);
+        assertTrue(scheduler.tryAcquire()); // the next token is only available after 200 ms
+        List<SpotifyRequestPriority> executed = Collections.synchronizedList(new ArrayList<>());
+        ClientHttpRequestExecution execution = (req, body) -> {
+            executed.add(SpotifyRequestPriority.current());
+            return response(HttpStatus.OK, null);
+        };
+
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> send(scheduler, execution));
+        awaitQueueDepth(SpotifyRequestPriority.INTERACTIVE, 1);
+        CompletableFuture<Void> background = CompletableFuture.runAsync(
+                () -> SpotifyRequestPriority.runInBackground(() -> send(scheduler, execution)));
+        awaitQueueDepth(SpotifyRequestPriority.BACKGROUND, 1);
+
+        CompletableFuture.allOf(interactive, background).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(SpotifyRequestPriority.INTERACTIVE, SpotifyRequestPriority.BACKGROUND), executed);
+    }
+
+    @Test
+    void waitsAndQueueDepthArePublishedPerPriority() throws Exception {
+        SpotifyRequestScheduler scheduler = scheduler(10, 1, 3);
+        ClientHttpRequestExecution execution = (req, body) -> response(HttpStatus.OK, null);
+
+        send(scheduler, execution);
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(
+                () -> SpotifyRequestPriority.runInBackground(() -> send(scheduler, execution)));
+        awaitQueueDepth(SpotifyRequestPriority.BACKGROUND, 1);
+        waiting.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, queueDepth(SpotifyRequestPriority.BACKGROUND));
+        assertEquals(1, waitTimer(SpotifyRequestPriority.INTERACTIVE).count());
+        assertEquals(1, waitTimer(SpotifyRequestPriority.BACKGROUND).count());
+        assertTrue(waitTimer(SpotifyRequestPriority.BACKGROUND).totalTime(TimeUnit.NANOSECONDS)
+                > waitTimer(SpotifyRequestPriority.INTERACTIVE).totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    private SpotifyRequestScheduler scheduler(double requestsPerSecond, int burst, int maxRetries) {
+        return new SpotifyRequestScheduler(meterRegistry, requestsPerSecond, burst, Duration.ofSeconds(10),
+                maxRetries);
+    }
+
+    private Void send(SpotifyRequestScheduler scheduler, ClientHttpRequestExecution execution) {
+        try {
+            scheduler.intercept(request, new byte[0], execution).close();
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitQueueDepth(SpotifyRequestPriority priority, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queueDepth(priority) != depth) {
+            assertTrue(System.nanoTime() < deadline, priority + " queue never reached a depth of " + depth);
+            Thread.sleep(1);
+        }
+    }
+
+    private double queueDepth(SpotifyRequestPriority priority) {
+        return meterRegistry.get("jamjot.spotify.scheduler.queue.depth")
+                .tag("priority", priority.name().toLowerCase())
+                .gauge()
+                .value();
+    }
+
+    private Timer waitTimer(SpotifyRequestPriority priority) {
+        return meterRegistry.get("jamjot.spotify.scheduler.wait")
+                .tag("priority", priority.name().toLowerCase())
+                .timer();
+    }
+
+    private static MockClientHttpResponse response(HttpStatus status, String retryAfter) {
+        MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], status);
+        if (retryAfter != null) {
+            response.getHeaders().add("Retry-After", retryAfter);
+        }
+        return response;
+    }
+}